@@ -0,0 +1,38 @@
+package com.example.stopsmoke;
+
+import androidx.test.espresso.IdlingResource;
+
+/**
+ * Tells Espresso to wait while {@link LogRepository} still has queued, running or
+ * undelivered work, so assertions never race the background threads.
+ */
+public class LogRepositoryIdlingResource implements IdlingResource {
+
+    private final LogRepository repository;
+    private volatile ResourceCallback resourceCallback;
+
+    public LogRepositoryIdlingResource(LogRepository repository) {
+        this.repository = repository;
+        repository.setIdleCallback(() -> {
+            ResourceCallback callback = resourceCallback;
+            if (callback != null) {
+                callback.onTransitionToIdle();
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return LogRepositoryIdlingResource.class.getName();
+    }
+
+    @Override
+    public boolean isIdleNow() {
+        return repository.isIdle();
+    }
+
+    @Override
+    public void registerIdleTransitionCallback(ResourceCallback callback) {
+        resourceCallback = callback;
+    }
+}
@@ -5,6 +5,7 @@ import android.content.SharedPreferences;
 
 import androidx.test.core.app.ActivityScenario;
 import androidx.test.core.app.ApplicationProvider;
+import androidx.test.espresso.IdlingRegistry;
 import androidx.test.espresso.action.ViewActions;
 
 import org.junit.After;
@@ -23,19 +24,29 @@ public class MainActivityTest {
 
     private DatabaseHelper dbHelper;
     private SharedPreferences prefs;
+    private LogRepositoryIdlingResource idlingResource;
 
     @Before
     public void setUp() {
         Context context = ApplicationProvider.getApplicationContext();
         dbHelper = new DatabaseHelper(context);
-        dbHelper.onUpgrade(dbHelper.getWritableDatabase(), 1, 1); // Reset the database before each test
+        dbHelper.deleteAllLogs(); // Reset the database before each test
 
         prefs = context.getSharedPreferences("StopSmokePrefs", Context.MODE_PRIVATE);
         prefs.edit().clear().commit();
+        SettingsStore.clear(); // Forget the in-memory settings and reload them from the reset state
+        SettingsStore.ensureLoaded(context);
+        SummaryCache.clear(); // Forget the in-memory summary so it reloads from the reset state
+
+        // Wait for the repository's background work before asserting
+        idlingResource = new LogRepositoryIdlingResource(LogRepository.getInstance(context));
+        IdlingRegistry.getInstance().register(idlingResource);
     }
 
     @After
     public void tearDown() {
+        IdlingRegistry.getInstance().unregister(idlingResource);
+        LogRepository.getInstance(ApplicationProvider.getApplicationContext()).setIdleCallback(null);
         dbHelper.close();
     }
 
@@ -63,7 +74,6 @@ public class MainActivityTest {
     public void clearCacheAndHistory_ShouldResetUIAndDatabase() {
         // Insert a log
         dbHelper.insertLog(new CigaretteLog(System.currentTimeMillis()));
-        prefs.edit().putInt("smokedToday", 1).apply();
 
         ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class);
 
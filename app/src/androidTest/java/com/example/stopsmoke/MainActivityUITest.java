@@ -27,7 +27,7 @@ public class MainActivityUITest {
     public void setUp() {
         Context context = ApplicationProvider.getApplicationContext();
         dbHelper = new DatabaseHelper(context);
-        dbHelper.onUpgrade(dbHelper.getWritableDatabase(), 1, 1); // Reset the database before each test
+        dbHelper.deleteAllLogs(); // Reset the database before each test
     }
 
     @After
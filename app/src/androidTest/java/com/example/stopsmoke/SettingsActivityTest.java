@@ -5,6 +5,7 @@ import android.content.SharedPreferences;
 
 import androidx.test.core.app.ActivityScenario;
 import androidx.test.core.app.ApplicationProvider;
+import androidx.test.espresso.IdlingRegistry;
 import androidx.test.espresso.action.ViewActions;
 
 import org.junit.After;
@@ -21,19 +22,29 @@ public class SettingsActivityTest {
 
     private DatabaseHelper dbHelper;
     private SharedPreferences prefs;
+    private LogRepositoryIdlingResource idlingResource;
 
     @Before
     public void setUp() {
         Context context = ApplicationProvider.getApplicationContext();
         dbHelper = new DatabaseHelper(context);
-        dbHelper.onUpgrade(dbHelper.getWritableDatabase(), 1, 1); // Reset the database before each test
+        dbHelper.deleteAllLogs(); // Reset the database before each test
 
         prefs = context.getSharedPreferences("StopSmokePrefs", Context.MODE_PRIVATE);
         prefs.edit().clear().commit();
+        SettingsStore.clear(); // Forget the in-memory settings and reload them from the reset state
+        SettingsStore.ensureLoaded(context);
+        SummaryCache.clear(); // Forget the in-memory summary so it reloads from the reset state
+
+        // Wait for the repository's background work before asserting
+        idlingResource = new LogRepositoryIdlingResource(LogRepository.getInstance(context));
+        IdlingRegistry.getInstance().register(idlingResource);
     }
 
     @After
     public void tearDown() {
+        IdlingRegistry.getInstance().unregister(idlingResource);
+        LogRepository.getInstance(ApplicationProvider.getApplicationContext()).setIdleCallback(null);
         dbHelper.close();
     }
 
@@ -64,9 +75,8 @@ public class SettingsActivityTest {
     public void clearCacheAndHistory_ShouldResetPreferencesAndDatabase() {
         // Insert a log
         dbHelper.insertLog(new CigaretteLog(System.currentTimeMillis()));
-        prefs.edit().putInt("smokedToday", 1).apply();
-        prefs.edit().putLong("nextCigaretteTime", System.currentTimeMillis() + 60000L).apply(); // Example value
-        prefs.edit().putLong("lastCigaretteTime", System.currentTimeMillis()).apply();
+        long now = System.currentTimeMillis();
+        SettingsStore.update(settings -> settings.withTimer(now, now + 60000L)); // Example value
 
         // Launch SettingsActivity
         ActivityScenario<SettingsActivity> scenario = ActivityScenario.launch(SettingsActivity.class);
@@ -77,12 +87,11 @@ public class SettingsActivityTest {
         // Confirm the dialog by clicking "Yes, Clear"
         onView(withText("Yes, Clear")).perform(ViewActions.click());
 
-        // Verify that SharedPreferences are reset
-        int smokedToday = prefs.getInt("smokedToday", -1);
+        // Verify that the timer is stopped in memory and in SharedPreferences
+        assertEquals("nextCigaretteTime should be 0", 0L, SettingsStore.get().getNextCigaretteTime());
         long nextCigTime = prefs.getLong("nextCigaretteTime", -1);
         long lastCigTime = prefs.getLong("lastCigaretteTime", -1);
 
-        assertEquals("smokedToday should be 0", 0, smokedToday);
         assertEquals("nextCigaretteTime should be -1 (key removed)", -1L, nextCigTime);
         assertEquals("lastCigaretteTime should be -1 (key removed)", -1L, lastCigTime);
 
@@ -0,0 +1,100 @@
+package com.example.stopsmoke;
+
+import android.os.Build;
+import android.os.StrictMode;
+import android.os.strictmode.Violation;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.espresso.IdlingRegistry;
+import androidx.test.espresso.action.ViewActions;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SdkSuppress;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static androidx.test.espresso.Espresso.*;
+import static androidx.test.espresso.matcher.ViewMatchers.*;
+import static org.junit.Assert.*;
+
+/**
+ * Fails if any screen performs SQLite I/O on the main thread.
+ */
+@RunWith(AndroidJUnit4.class)
+@SdkSuppress(minSdkVersion = Build.VERSION_CODES.P) // StrictMode penalty listeners need API 28
+public class StrictModeTest {
+
+    private final List<Violation> violations = new CopyOnWriteArrayList<>();
+    private LogRepositoryIdlingResource idlingResource;
+
+    @Before
+    public void setUp() {
+        // Wait for the repository's background work before asserting
+        LogRepository repository = LogRepository.getInstance(ApplicationProvider.getApplicationContext());
+        idlingResource = new LogRepositoryIdlingResource(repository);
+        IdlingRegistry.getInstance().register(idlingResource);
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                        .detectDiskReads()
+                        .detectDiskWrites()
+                        .penaltyListener(Runnable::run, violations::add)
+                        .build()));
+    }
+
+    @After
+    public void tearDown() {
+        IdlingRegistry.getInstance().unregister(idlingResource);
+        LogRepository.getInstance(ApplicationProvider.getApplicationContext()).setIdleCallback(null);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                StrictMode.setThreadPolicy(StrictMode.ThreadPolicy.LAX));
+    }
+
+    @Test
+    public void mainActivity_ShouldNotTouchDatabaseOnMainThread() {
+        ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class);
+        onView(withId(R.id.buttonLogCigarette)).perform(ViewActions.click());
+        scenario.recreate();
+
+        assertNoDatabaseViolations();
+    }
+
+    @Test
+    public void progressActivity_ShouldNotTouchDatabaseOnMainThread() {
+        ActivityScenario<ProgressActivity> scenario = ActivityScenario.launch(ProgressActivity.class);
+        scenario.recreate();
+
+        assertNoDatabaseViolations();
+    }
+
+    @Test
+    public void settingsActivity_ShouldNotTouchDatabaseOnMainThread() {
+        ActivityScenario.launch(SettingsActivity.class);
+        onView(withId(R.id.buttonClearCacheHistory)).perform(ViewActions.click());
+        onView(withText("Yes, Clear")).perform(ViewActions.click());
+
+        assertNoDatabaseViolations();
+    }
+
+    /**
+     * Asserts that none of the recorded disk violations originated in the SQLite stack.
+     */
+    private void assertNoDatabaseViolations() {
+        onIdle(); // Includes the repository's background work and its callbacks
+        InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        for (Violation violation : violations) {
+            for (StackTraceElement element : violation.getStackTrace()) {
+                if (element.getClassName().startsWith("android.database.sqlite")) {
+                    fail("Database accessed on the main thread: " + violation);
+                }
+            }
+        }
+    }
+}
@@ -1,26 +1,42 @@
 package com.example.stopsmoke;
 
-import android.annotation.SuppressLint;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * Adapter for RecyclerView to display cigarette logs.
  */
 public class CigaretteLogAdapter extends RecyclerView.Adapter<CigaretteLogAdapter.LogViewHolder> {
 
-    private List<CigaretteLog> logs = new ArrayList<>();
+    // Shared background thread for list diffs, like AsyncListDiffer's default executor
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final TimestampFormatter formatter = new TimestampFormatter();
+    private LogColumns logs = new LogColumns();
+
+    // Updates that arrive while a diff is running are applied, in order, once it lands
+    private boolean diffing;
+    private final List<LogColumns> pendingPages = new ArrayList<>();
+    private LogColumns queuedLogs;
+
+    public CigaretteLogAdapter() {
+        // Row ids are database ids, so RecyclerView can keep views and animations across updates
+        setHasStableIds(true);
+    }
 
     @NonNull
     @Override
@@ -31,8 +47,10 @@ public class CigaretteLogAdapter extends RecyclerView.Adapter<CigaretteLogAdapte
 
     @Override
     public void onBindViewHolder(@NonNull LogViewHolder holder, int position) {
-        CigaretteLog log = logs.get(position);
-        holder.textViewTimestamp.setText(formatTimestamp(log.getTimestamp()));
+        // TextView keeps a reference to the array rather than copying it, so each row gets its
+        // own buffer; the formatter's shared one is overwritten by the next row it formats
+        System.arraycopy(formatter.format(logs.getTimestamp(position)), 0, holder.timestamp, 0, TimestampFormatter.LENGTH);
+        holder.textViewTimestamp.setText(holder.timestamp, 0, TimestampFormatter.LENGTH);
     }
 
     @Override
@@ -40,26 +58,92 @@ public class CigaretteLogAdapter extends RecyclerView.Adapter<CigaretteLogAdapte
         return logs.size();
     }
 
+    @Override
+    public long getItemId(int position) {
+        return logs.getId(position);
+    }
+
     /**
-     * Sets the logs data and notifies the adapter.
+     * Replaces the logs with a new list. The difference is computed on a background thread
+     * and dispatched as fine-grained item changes, so adding one log inserts one row.
      *
-     * @param logs List of CigaretteLog objects.
+     * @param newLogs Columnar ids and timestamps of the logs. Must not be modified afterwards.
      */
-    @SuppressLint("NotifyDataSetChanged")
-    public void setLogs(List<CigaretteLog> logs) {
-        this.logs = logs;
-        notifyDataSetChanged();
+    public void submitLogs(LogColumns newLogs) {
+        if (diffing) {
+            queuedLogs = newLogs; // Only the latest list matters
+            return;
+        }
+        diffing = true;
+
+        final LogColumns oldLogs = logs;
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(new LogDiffCallback(oldLogs, newLogs), false);
+            mainHandler.post(() -> {
+                logs = newLogs;
+                result.dispatchUpdatesTo(this);
+                diffing = false;
+
+                // Replay anything that arrived while diffing
+                for (LogColumns page : pendingPages) {
+                    appendLogs(page);
+                }
+                pendingPages.clear();
+                if (queuedLogs != null) {
+                    LogColumns next = queuedLogs;
+                    queuedLogs = null;
+                    submitLogs(next);
+                }
+            });
+        });
     }
 
     /**
-     * Formats the timestamp into a readable date and time string.
+     * Appends a page of logs to the end of the list.
      *
-     * @param timestamp The timestamp in milliseconds.
-     * @return A formatted date and time string.
+     * @param page Columnar ids and timestamps of the next page.
      */
-    private String formatTimestamp(long timestamp) {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault());
-        return sdf.format(new Date(timestamp));
+    public void appendLogs(LogColumns page) {
+        if (diffing) {
+            pendingPages.add(page);
+            return;
+        }
+        int start = logs.size();
+        logs.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
+
+    /**
+     * Compares two columnar lists by database id, then by timestamp.
+     */
+    private static class LogDiffCallback extends DiffUtil.Callback {
+        private final LogColumns oldLogs;
+        private final LogColumns newLogs;
+
+        LogDiffCallback(LogColumns oldLogs, LogColumns newLogs) {
+            this.oldLogs = oldLogs;
+            this.newLogs = newLogs;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldLogs.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newLogs.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldLogs.getId(oldItemPosition) == newLogs.getId(newItemPosition);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldLogs.getTimestamp(oldItemPosition) == newLogs.getTimestamp(newItemPosition);
+        }
     }
 
     /**
@@ -67,6 +151,8 @@ public class CigaretteLogAdapter extends RecyclerView.Adapter<CigaretteLogAdapte
      */
     static class LogViewHolder extends RecyclerView.ViewHolder {
         TextView textViewTimestamp;
+        // Characters shown by textViewTimestamp; reused whenever the holder is rebound
+        final char[] timestamp = new char[TimestampFormatter.LENGTH];
 
         public LogViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -0,0 +1,71 @@
+package com.example.stopsmoke;
+
+import android.content.Context;
+import android.content.Intent;
+
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * The one write path for logging a cigarette, shared by MainActivity, the home-screen
+ * widget and the Quick Settings tile. Everything runs on the repository's writer thread:
+ * the insert, the timer settings, the summary update and the notification schedule,
+ * so callers never touch disk and do not need any UI.
+ */
+public final class CigaretteLogger {
+
+    private CigaretteLogger() {
+    }
+
+    /**
+     * Logs a cigarette smoked now and starts the timer until the next one is allowed.
+     *
+     * @param context  Any context; only the application context is used.
+     * @param owner    Lifecycle of the caller, or null to always deliver.
+     * @param callback Receives the next allowed time, or -1 if the log could not be written.
+     */
+    public static void log(Context context, @Nullable LifecycleOwner owner,
+                           @Nullable LogRepository.Callback<Long> callback) {
+        final Context appContext = context.getApplicationContext();
+        final long currentTimeMillis = System.currentTimeMillis();
+
+        LogRepository.getInstance(appContext).write(db -> {
+            SummarySnapshot summary = SummaryCache.ensureLoaded(appContext, db);
+            if (db.insertLog(new CigaretteLog(currentTimeMillis)) == -1) {
+                return -1L;
+            }
+
+            // The next allowed time is the next free slot in today's schedule
+            int smokedToday = summary.withLogged(currentTimeMillis).getSmokedToday();
+            long nextTime = SlotPlanner.getInstance().nextAllowedTime(currentTimeMillis, smokedToday,
+                    summary.getAllowedToday(), summary.getWakeMinute(), summary.getSleepMinute());
+
+            // The timer reaches the summary through the settings listener, the new count directly
+            SettingsStore.update(settings -> settings.withTimer(currentTimeMillis, nextTime));
+            SummaryCache.update(current -> current.withLogged(currentTimeMillis));
+
+            // The worker posts the notification, even if this process is gone by then;
+            // an earlier "you can smoke now" notification no longer applies
+            TimerWorker.schedule(appContext, nextTime);
+            NotificationRegistry.getInstance(appContext).cancelTimerCompleted();
+            return nextTime;
+        }, owner, callback);
+    }
+
+    /**
+     * Stops the timer and its notifications once the history it was based on has been
+     * deleted or replaced, and tells MainActivity to refresh. Run it as part of the writer
+     * job that changed the history, so no log can slip in between.
+     *
+     * @param appContext The application context.
+     */
+    static void stopTimer(Context appContext) {
+        SettingsStore.ensureLoaded(appContext);
+        SettingsStore.update(settings -> settings.withTimer(0, 0));
+        TimerWorker.cancel(appContext);
+        NotificationRegistry.getInstance(appContext).cancelTimerCompleted();
+
+        Intent intent = new Intent("com.example.stopsmoke.ACTION_CLEAR_CACHE_HISTORY");
+        appContext.sendBroadcast(intent);
+    }
+}
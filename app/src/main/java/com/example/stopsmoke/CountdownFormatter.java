@@ -0,0 +1,61 @@
+package com.example.stopsmoke;
+
+/**
+ * Formats a remaining duration as a fixed prefix followed by "mm:ss" into a reused
+ * character buffer. Minutes are not wrapped into hours and grow beyond two digits as needed.
+ * Seconds are rounded up, so the text never reads 00:00 while time is still left.
+ * Not thread-safe: use one instance per view.
+ */
+public final class CountdownFormatter {
+
+    // Enough for Long.MAX_VALUE minutes plus ":ss"
+    private static final int MAX_DIGITS = 19 + 3;
+
+    private final char[] buffer;
+    private final int prefixLength;
+
+    /**
+     * @param prefix Text written before the duration, e.g. "Next cigarette available in: ".
+     */
+    public CountdownFormatter(String prefix) {
+        prefixLength = prefix.length();
+        buffer = new char[prefixLength + MAX_DIGITS];
+        prefix.getChars(0, prefixLength, buffer, 0);
+    }
+
+    /**
+     * Formats a remaining duration into the buffer.
+     *
+     * @param remainingMillis Milliseconds left; negative values format as zero.
+     * @return The number of characters written to {@link #getBuffer()}.
+     */
+    public int format(long remainingMillis) {
+        long totalSeconds = remainingMillis <= 0 ? 0 : (remainingMillis + 999) / 1000;
+        long minutes = totalSeconds / 60;
+        int seconds = (int) (totalSeconds % 60);
+
+        // Write minutes right to left, padded to at least two digits
+        int digits = 2;
+        for (long rest = minutes / 100; rest > 0; rest /= 10) {
+            digits++;
+        }
+        int position = prefixLength + digits;
+        for (int i = 0; i < digits; i++) {
+            buffer[--position] = (char) ('0' + minutes % 10);
+            minutes /= 10;
+        }
+
+        position = prefixLength + digits;
+        buffer[position] = ':';
+        buffer[position + 1] = (char) ('0' + seconds / 10);
+        buffer[position + 2] = (char) ('0' + seconds % 10);
+        return position + 3;
+    }
+
+    /**
+     * @return The buffer written by {@link #format(long)}. Overwritten by the next call.
+     */
+    public char[] getBuffer() {
+        return buffer;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.stopsmoke;
+
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+/**
+ * Shows a countdown to a wall-clock target time in a TextView.
+ * Each tick is scheduled for the exact moment the displayed second changes, computed from
+ * the wall clock rather than by accumulating delays, so it never drifts and never wakes
+ * up twice for the same value. The text is written from a reused buffer.
+ * Ticking stops while the owner is not started and picks up from the target time again
+ * when it is, so nothing runs for a screen that cannot be seen.
+ */
+public class CountdownTicker implements DefaultLifecycleObserver {
+
+    /**
+     * Notified on the main thread when a running countdown reaches its target.
+     */
+    public interface Listener {
+        void onCountdownFinished();
+    }
+
+    private final TextView view;
+    private final CountdownFormatter formatter;
+    private final Listener listener;
+    private final Runnable tick = this::tick;
+
+    private long targetTimeMillis;
+    private boolean visible;
+
+    /**
+     * @param owner    Lifecycle that decides when the countdown is visible.
+     * @param view     The TextView to write the remaining time into.
+     * @param prefix   Text shown before the remaining time.
+     * @param listener Notified when the countdown finishes while visible.
+     */
+    public CountdownTicker(LifecycleOwner owner, TextView view, String prefix, Listener listener) {
+        this.view = view;
+        this.formatter = new CountdownFormatter(prefix);
+        this.listener = listener;
+        owner.getLifecycle().addObserver(this);
+    }
+
+    /**
+     * Counts down to a target time, replacing any countdown in progress.
+     *
+     * @param targetTimeMillis Wall-clock time the countdown ends at.
+     */
+    public void start(long targetTimeMillis) {
+        this.targetTimeMillis = targetTimeMillis;
+        view.removeCallbacks(tick);
+        if (visible) {
+            tick();
+        }
+    }
+
+    /**
+     * Stops the countdown without notifying the listener.
+     */
+    public void cancel() {
+        targetTimeMillis = 0;
+        view.removeCallbacks(tick);
+    }
+
+    /**
+     * @return True if a countdown has been started and not yet finished or cancelled.
+     */
+    public boolean isRunning() {
+        return targetTimeMillis != 0;
+    }
+
+    @Override
+    public void onStart(@NonNull LifecycleOwner owner) {
+        visible = true;
+        if (targetTimeMillis > System.currentTimeMillis()) {
+            tick();
+        } else {
+            // Ended while hidden; the owner shows the expired state when it resumes
+            targetTimeMillis = 0;
+        }
+    }
+
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        visible = false;
+        view.removeCallbacks(tick);
+    }
+
+    private void tick() {
+        long remaining = targetTimeMillis - System.currentTimeMillis();
+        if (remaining <= 0) {
+            targetTimeMillis = 0;
+            listener.onCountdownFinished();
+            return;
+        }
+
+        int length = formatter.format(remaining);
+        view.setText(formatter.getBuffer(), 0, length);
+
+        // Seconds are rounded up, so the text changes when the remainder crosses a whole second
+        long untilNextChange = remaining % 1000;
+        view.postDelayed(tick, untilNextChange == 0 ? 1000 : untilNextChange);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.stopsmoke;
+
+import java.util.TreeMap;
+
+/**
+ * In-memory Fenwick tree (binary indexed tree) over cigarettes per local epoch day.
+ * Point updates and arbitrary day-range totals both take O(log n) for n days of history,
+ * so "how many between these two dates" never goes back to SQLite.
+ * The covered range grows on demand in either direction, up to {@link #MAX_SPAN_DAYS}.
+ * Days that would stretch it further, such as a mistyped or wrong-unit timestamp, are kept
+ * in a small sorted map instead, so one stray day can never allocate a huge array.
+ * All methods are synchronized: updates come from the writer thread while reads may come
+ * from any thread.
+ */
+public class DailyCountIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // About 90 years; a power of two, so doubling from INITIAL_CAPACITY lands on it exactly
+    static final int MAX_SPAN_DAYS = 1 << 15;
+
+    private long baseDay;
+    private int[] counts;
+    private long[] tree;
+
+    // Days outside the dense range, which could not grow to cover them
+    private final TreeMap<Long, Integer> outliers = new TreeMap<>();
+
+    /**
+     * Adds cigarettes to a day.
+     *
+     * @param day   Local epoch day (see {@link LocalDays}).
+     * @param delta Number of cigarettes to add; may be negative.
+     */
+    public synchronized void add(long day, int delta) {
+        if (counts == null) {
+            baseDay = day;
+            counts = new int[INITIAL_CAPACITY];
+            tree = new long[INITIAL_CAPACITY + 1];
+        } else if (day < baseDay || day >= baseDay + counts.length) {
+            long newBase = Math.min(baseDay, day);
+            long newEnd = Math.max(baseDay + counts.length, day + 1);
+            if (newEnd - newBase > MAX_SPAN_DAYS) {
+                Integer count = outliers.get(day);
+                outliers.put(day, count == null ? delta : count + delta);
+                return;
+            }
+            resize(newBase, newEnd);
+        }
+
+        int offset = (int) (day - baseDay);
+        counts[offset] += delta;
+        for (int i = offset + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Returns the total for an inclusive range of days.
+     *
+     * @param fromDay First local epoch day.
+     * @param toDay   Last local epoch day, inclusive.
+     * @return The number of cigarettes smoked in the range.
+     */
+    public synchronized long sum(long fromDay, long toDay) {
+        if (toDay < fromDay) {
+            return 0;
+        }
+        long sum = prefixSum(toDay) - prefixSum(fromDay - 1);
+        for (int count : outliers.subMap(fromDay, true, toDay, true).values()) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the count of a single day.
+     *
+     * @param day Local epoch day.
+     * @return The number of cigarettes smoked that day.
+     */
+    public synchronized int get(long day) {
+        Integer outlier = outliers.get(day);
+        int count = outlier == null ? 0 : outlier;
+        if (counts == null || day < baseDay || day >= baseDay + counts.length) {
+            return count;
+        }
+        return count + counts[(int) (day - baseDay)];
+    }
+
+    /**
+     * Returns the average per day over a window of days ending at (and including) a day.
+     *
+     * @param endDay Last local epoch day of the window.
+     * @param days   Length of the window, e.g. 7 or 30.
+     * @return The mean number of cigarettes per day in the window.
+     */
+    public double rollingAverage(long endDay, int days) {
+        return (double) sum(endDay - days + 1, endDay) / days;
+    }
+
+    /**
+     * Forgets every count, e.g. after the history has been cleared.
+     */
+    public synchronized void clear() {
+        counts = null;
+        tree = null;
+        outliers.clear();
+    }
+
+    /**
+     * Sum of all days up to and including {@code day}.
+     */
+    private long prefixSum(long day) {
+        if (counts == null || day < baseDay) {
+            return 0;
+        }
+        int end = (int) Math.min(day - baseDay, counts.length - 1) + 1;
+        long sum = 0;
+        for (int i = end; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Re-lays the index out over a wider range, doubling capacity so repeated growth
+     * stays amortized O(1) per day. The tree is rebuilt in linear time. Callers keep the
+     * range within {@link #MAX_SPAN_DAYS}, so the capacity never exceeds it.
+     */
+    private void resize(long newBase, long newEnd) {
+        int capacity = counts.length;
+        while (capacity < newEnd - newBase) {
+            capacity *= 2;
+        }
+        // Grow towards the side that needed the room
+        if (newBase < baseDay) {
+            newBase = newEnd - capacity;
+        }
+
+        int[] newCounts = new int[capacity];
+        System.arraycopy(counts, 0, newCounts, (int) (baseDay - newBase), counts.length);
+        long[] newTree = new long[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            newTree[i] += newCounts[i - 1];
+            int parent = i + (i & -i);
+            if (parent <= capacity) {
+                newTree[parent] += newTree[i];
+            }
+        }
+
+        baseDay = newBase;
+        counts = newCounts;
+        tree = newTree;
+    }
+}
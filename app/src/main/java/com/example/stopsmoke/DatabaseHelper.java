@@ -3,12 +3,19 @@ package com.example.stopsmoke;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Calendar;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Helper class to manage SQLite database operations.
@@ -16,31 +23,136 @@ import java.util.Calendar;
 public class DatabaseHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "StopSmoke.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 5;
 
-    // Table and columns
-    private static final String TABLE_LOGS = "cigarette_logs";
-    private static final String COLUMN_ID = "id";
-    private static final String COLUMN_TIMESTAMP = "timestamp";
+    // Last schema version that changed how rollups are derived; upgrades from before it rebuild them
+    private static final int ROLLUPS_VERSION = 4;
 
+    // Period types in the period rollup table
+    public static final int PERIOD_WEEK = LogSchema.PERIOD_WEEK;
+    public static final int PERIOD_MONTH = LogSchema.PERIOD_MONTH;
+    public static final int PERIOD_YEAR = LogSchema.PERIOD_YEAR;
+
+    // Tables and columns; the schema and hot-path SQL live in LogSchema, shared with the benchmarks
+    private static final String TABLE_LOGS = LogSchema.TABLE_LOGS;
+    private static final String COLUMN_ID = LogSchema.COLUMN_ID;
+    private static final String COLUMN_TIMESTAMP = LogSchema.COLUMN_TIMESTAMP;
+    private static final String TABLE_DAILY_COUNTS = LogSchema.TABLE_DAILY_COUNTS;
+    private static final String COLUMN_DAY = LogSchema.COLUMN_DAY;
+    private static final String COLUMN_COUNT = LogSchema.COLUMN_COUNT;
+    private static final String TABLE_PERIOD_COUNTS = LogSchema.TABLE_PERIOD_COUNTS;
+    private static final String COLUMN_PERIOD_TYPE = LogSchema.COLUMN_PERIOD_TYPE;
+    private static final String COLUMN_PERIOD = LogSchema.COLUMN_PERIOD;
+    private static final String TABLE_HOUR_COUNTS = LogSchema.TABLE_HOUR_COUNTS;
+    private static final String COLUMN_SLOT = LogSchema.COLUMN_SLOT;
+
+    // Process-wide instance; the underlying connection stays open until the process dies
+    private static DatabaseHelper instance;
+
+    // In-memory range-sum index over daily_counts, built on first use. Writers hold the lock
+    // across their transaction so a concurrent build can never count a row twice or miss it.
+    private final Object dailyIndexLock = new Object();
+    private DailyCountIndex dailyIndex;
+
+    // Set by the version 5 migration; VACUUM cannot run inside the upgrade transaction, so
+    // onOpen runs it once the upgrade has committed
+    private boolean vacuumPending;
+
+    /**
+     * Returns the app-scoped DatabaseHelper. The connection is opened once and reused by
+     * every screen and worker instead of being reopened for each query.
+     *
+     * @param context Any context; the application context is retained.
+     * @return The shared DatabaseHelper instance.
+     */
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a standalone helper. Prefer {@link #getInstance(Context)} in app code.
+     */
     public DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
 
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Let freed pages be returned to the file system in steps. Set before the journal mode
+        // so it applies to a new database from its first page; existing databases are
+        // converted by the version 5 migration.
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        // Write-ahead logging lets reads proceed while a write is in progress
+        db.enableWriteAheadLogging();
+    }
+
     @Override
     public void onCreate(SQLiteDatabase db) {
-        String CREATE_LOGS_TABLE = "CREATE TABLE " + TABLE_LOGS + "("
-                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + COLUMN_TIMESTAMP + " INTEGER"
-                + ")";
-        db.execSQL(CREATE_LOGS_TABLE);
+        // Create the version 1 schema, then replay every migration on top of it so that
+        // fresh installs and upgraded installs always end up with the same schema.
+        db.execSQL(LogSchema.CREATE_LOGS_TABLE);
+        onUpgrade(db, 1, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (vacuumPending) {
+            vacuumPending = false;
+            // Rewrites the whole file once, so it may take a while on a long history
+            db.execSQL("VACUUM");
+        }
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // For now, simply drop and recreate the table on upgrade
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_LOGS);
-        onCreate(db);
+        // Apply each migration step in order. SQLiteOpenHelper already wraps this call in a
+        // transaction, so a failing step leaves the database at its previous version.
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            migrateTo(db, version);
+        }
+        // Rollups are derived data, so rebuild them once after the schema is in place
+        if (oldVersion < ROLLUPS_VERSION) {
+            rebuildRollups(db);
+        }
+    }
+
+    /**
+     * Applies the schema changes introduced in the given database version.
+     * Migrations must never drop user data.
+     *
+     * @param db      The database being upgraded.
+     * @param version The version to migrate to.
+     */
+    private void migrateTo(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 2:
+                // Index the timestamp so range queries become index seeks instead of table scans
+                db.execSQL(LogSchema.CREATE_TIMESTAMP_INDEX);
+                break;
+            case 3:
+                // Per-day rollup so daily totals are a primary-key lookup
+                db.execSQL(LogSchema.CREATE_DAILY_COUNTS);
+                break;
+            case 4:
+                // Week, month and year rollups plus the hour-of-week heatmap for history analytics
+                db.execSQL(LogSchema.CREATE_PERIOD_COUNTS);
+                db.execSQL(LogSchema.CREATE_HOUR_COUNTS);
+                break;
+            case 5:
+                // Incremental auto-vacuum only takes effect on an existing database after a full
+                // VACUUM, which onOpen runs once this upgrade has committed
+                if (DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null) != 2) {
+                    vacuumPending = true;
+                }
+                break;
+            default:
+                throw new IllegalStateException("No migration defined for database version " + version);
+        }
     }
 
     /**
@@ -54,11 +166,76 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         ContentValues values = new ContentValues();
         values.put(COLUMN_TIMESTAMP, log.getTimestamp());
 
-        long result = db.insert(TABLE_LOGS, null, values);
-        db.close();
+        // Insert the row and bump its rollups atomically
+        long result;
+        RollupDeltas deltas = new RollupDeltas();
+        synchronized (dailyIndexLock) {
+            db.beginTransaction();
+            try {
+                result = db.insert(TABLE_LOGS, null, values);
+                if (result != -1) {
+                    deltas.add(log.getTimestamp());
+                    deltas.applyTo(db);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            // Only reached once the transaction has committed
+            deltas.applyTo(dailyIndex);
+        }
         return result;
     }
 
+    /**
+     * Inserts many cigarette logs in a single transaction, reusing one compiled statement
+     * for every row. Use this for backfills and imports instead of calling
+     * {@link #insertLog(CigaretteLog)} in a loop.
+     *
+     * @param logs The CigaretteLog objects to insert.
+     * @return The number of rows inserted.
+     */
+    public int insertLogs(List<CigaretteLog> logs) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement(LogSchema.INSERT_LOG);
+
+        int inserted = 0;
+        RollupDeltas deltas = new RollupDeltas();
+        synchronized (dailyIndexLock) {
+            db.beginTransaction();
+            try {
+                for (CigaretteLog log : logs) {
+                    statement.bindLong(1, log.getTimestamp());
+                    if (statement.executeInsert() != -1) {
+                        inserted++;
+                        deltas.add(log.getTimestamp());
+                    }
+                }
+                // Apply the rollups once per touched bucket rather than once per row
+                deltas.applyTo(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                statement.close();
+            }
+            deltas.applyTo(dailyIndex);
+        }
+        return inserted;
+    }
+
+    /**
+     * Receives log rows one at a time while a cursor is being walked.
+     */
+    public interface LogVisitor {
+        /**
+         * Called once per row, in ascending timestamp order.
+         *
+         * @param id        The log entry ID.
+         * @param timestamp The timestamp in milliseconds since epoch.
+         */
+        void visit(int id, long timestamp);
+    }
+
     /**
      * Retrieves logs between specified timestamps.
      *
@@ -67,28 +244,160 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return A list of CigaretteLog objects.
      */
     public List<CigaretteLog> getLogsBetween(long startTimestamp, long endTimestamp) {
-        List<CigaretteLog> logs = new ArrayList<>();
+        final List<CigaretteLog> logs = new ArrayList<>();
+        forEachLogBetween(startTimestamp, endTimestamp, (id, timestamp) -> logs.add(new CigaretteLog(id, timestamp)));
+        return logs;
+    }
+
+    /**
+     * Retrieves logs between specified timestamps as primitive columns.
+     *
+     * @param startTimestamp Start time in milliseconds.
+     * @param endTimestamp   End time in milliseconds.
+     * @return The matching ids and timestamps, in ascending timestamp order.
+     */
+    public LogColumns getLogColumnsBetween(long startTimestamp, long endTimestamp) {
+        LogColumns columns = new LogColumns();
+        forEachLogBetween(startTimestamp, endTimestamp, columns);
+        return columns;
+    }
+
+    /**
+     * Retrieves only the timestamps of logs between specified timestamps.
+     *
+     * @param startTimestamp Start time in milliseconds.
+     * @param endTimestamp   End time in milliseconds.
+     * @return The matching timestamps in ascending order.
+     */
+    public long[] getTimestampsBetween(long startTimestamp, long endTimestamp) {
+        return getLogColumnsBetween(startTimestamp, endTimestamp).timestampsArray();
+    }
+
+    /**
+     * Retrieves one page of logs, newest first, strictly older than the given keyset position.
+     * The timestamp index also orders rows by rowid, so this is a seek on (timestamp, id)
+     * rather than an OFFSET scan.
+     *
+     * @param beforeTimestamp Timestamp of the last row already shown, or Long.MAX_VALUE for the first page.
+     * @param beforeId        ID of the last row already shown, or Integer.MAX_VALUE for the first page.
+     * @param limit           Maximum number of rows to return.
+     * @return The page of ids and timestamps, in descending (timestamp, id) order.
+     */
+    public LogColumns getLogPageBefore(long beforeTimestamp, int beforeId, int limit) {
         SQLiteDatabase db = this.getReadableDatabase();
 
         Cursor cursor = db.query(TABLE_LOGS,
                 new String[]{COLUMN_ID, COLUMN_TIMESTAMP},
-                COLUMN_TIMESTAMP + " BETWEEN ? AND ?",
-                new String[]{String.valueOf(startTimestamp), String.valueOf(endTimestamp)},
-                null, null, COLUMN_TIMESTAMP + " ASC");
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                CigaretteLog log = new CigaretteLog();
-                log.setId(cursor.getInt(cursor.getColumnIndexOrThrow(COLUMN_ID)));
-                log.setTimestamp(cursor.getLong(cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP)));
-                logs.add(log);
-            } while (cursor.moveToNext());
+                COLUMN_TIMESTAMP + " <= ? AND (" + COLUMN_TIMESTAMP + " < ? OR " + COLUMN_ID + " < ?)",
+                new String[]{String.valueOf(beforeTimestamp), String.valueOf(beforeTimestamp), String.valueOf(beforeId)},
+                null, null, COLUMN_TIMESTAMP + " DESC, " + COLUMN_ID + " DESC", String.valueOf(limit));
 
+        LogColumns page = new LogColumns(limit);
+        try {
+            int idIndex = cursor.getColumnIndexOrThrow(COLUMN_ID);
+            int timestampIndex = cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP);
+            while (cursor.moveToNext()) {
+                page.add(cursor.getInt(idIndex), cursor.getLong(timestampIndex));
+            }
+        } finally {
             cursor.close();
         }
+        return page;
+    }
 
-        db.close();
-        return logs;
+    /**
+     * Reads the next chunk of logs, oldest first, strictly after the given keyset position.
+     * Used to stream the whole history in bounded chunks: each call is a short-lived cursor
+     * and the rows go into a buffer the caller reuses.
+     *
+     * @param afterTimestamp Timestamp of the last row already read, or Long.MIN_VALUE to start.
+     * @param afterId        ID of the last row already read, or Integer.MIN_VALUE to start.
+     * @param limit          Maximum number of rows to read.
+     * @param into           Buffer to fill; it is cleared first.
+     * @return The number of rows read; fewer than {@code limit} means the end was reached.
+     */
+    public int readLogChunkAfter(long afterTimestamp, int afterId, int limit, LogColumns into) {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        Cursor cursor = db.query(TABLE_LOGS,
+                new String[]{COLUMN_ID, COLUMN_TIMESTAMP},
+                COLUMN_TIMESTAMP + " >= ? AND (" + COLUMN_TIMESTAMP + " > ? OR " + COLUMN_ID + " > ?)",
+                new String[]{String.valueOf(afterTimestamp), String.valueOf(afterTimestamp), String.valueOf(afterId)},
+                null, null, COLUMN_TIMESTAMP + " ASC, " + COLUMN_ID + " ASC", String.valueOf(limit));
+
+        into.clear();
+        try {
+            int idIndex = cursor.getColumnIndexOrThrow(COLUMN_ID);
+            int timestampIndex = cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP);
+            while (cursor.moveToNext()) {
+                into.add(cursor.getInt(idIndex), cursor.getLong(timestampIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return into.size();
+    }
+
+    /**
+     * Counts every stored log.
+     *
+     * @return The number of rows in the log table.
+     */
+    public long countLogs() {
+        return DatabaseUtils.queryNumEntries(this.getReadableDatabase(), TABLE_LOGS);
+    }
+
+    /**
+     * Retrieves every log at or after the given keyset position, newest first. This is the
+     * window a paged list has loaded so far, re-read so it can be diffed against what is shown.
+     *
+     * @param fromTimestamp Timestamp of the oldest row in the window.
+     * @param fromId        ID of the oldest row in the window.
+     * @return The window of ids and timestamps, in descending (timestamp, id) order.
+     */
+    public LogColumns getLogsSince(long fromTimestamp, int fromId) {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        Cursor cursor = db.query(TABLE_LOGS,
+                new String[]{COLUMN_ID, COLUMN_TIMESTAMP},
+                COLUMN_TIMESTAMP + " >= ? AND (" + COLUMN_TIMESTAMP + " > ? OR " + COLUMN_ID + " >= ?)",
+                new String[]{String.valueOf(fromTimestamp), String.valueOf(fromTimestamp), String.valueOf(fromId)},
+                null, null, COLUMN_TIMESTAMP + " DESC, " + COLUMN_ID + " DESC");
+
+        LogColumns window = new LogColumns();
+        try {
+            int idIndex = cursor.getColumnIndexOrThrow(COLUMN_ID);
+            int timestampIndex = cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP);
+            while (cursor.moveToNext()) {
+                window.add(cursor.getInt(idIndex), cursor.getLong(timestampIndex));
+            }
+        } finally {
+            cursor.close();
+        }
+        return window;
+    }
+
+    /**
+     * Streams logs between specified timestamps to a visitor without materializing them.
+     * Memory use is constant regardless of how many rows match.
+     *
+     * @param startTimestamp Start time in milliseconds.
+     * @param endTimestamp   End time in milliseconds.
+     * @param visitor        Receives each matching row.
+     */
+    public void forEachLogBetween(long startTimestamp, long endTimestamp, LogVisitor visitor) {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        Cursor cursor = db.rawQuery(LogSchema.SELECT_LOGS_BETWEEN,
+                new String[]{String.valueOf(startTimestamp), String.valueOf(endTimestamp)});
+
+        try {
+            while (cursor.moveToNext()) {
+                visitor.visit(cursor.getInt(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
@@ -98,34 +407,133 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * @return The count of cigarettes smoked on that date.
      */
     public int countCigarettesOn(Date date) {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(date);
-        // Set to start of day
-        calendar.set(Calendar.HOUR_OF_DAY, 0);
-        calendar.set(Calendar.MINUTE, 0);
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-        long startOfDay = calendar.getTimeInMillis();
-
-        // Set to end of day
-        calendar.add(Calendar.DAY_OF_YEAR, 1);
-        long endOfDay = calendar.getTimeInMillis() - 1;
+        long day = LocalDays.epochDay(date.getTime());
 
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_LOGS
-                        + " WHERE " + COLUMN_TIMESTAMP + " BETWEEN ? AND ?",
-                new String[]{String.valueOf(startOfDay), String.valueOf(endOfDay)});
+        Cursor cursor = db.rawQuery(LogSchema.SELECT_DAY_COUNT, new String[]{String.valueOf(day)});
 
         int count = 0;
-        if (cursor != null && cursor.moveToFirst()) {
-            count = cursor.getInt(0);
+        try {
+            if (cursor.moveToFirst()) {
+                count = cursor.getInt(0);
+            }
+        } finally {
             cursor.close();
         }
 
-        db.close();
         return count;
     }
 
+    /**
+     * Computes the progress statistics for a range of local days in one GROUP BY query over
+     * the daily rollup, so no raw rows are shipped to Java.
+     *
+     * @param startDay First local epoch day of the range; weeks are counted from it.
+     * @param endDay   Last local epoch day of the range, inclusive.
+     * @return Weekly totals, days smoked and the peak daily count.
+     */
+    public ProgressStats getProgressStats(long startDay, long endDay) {
+        int weeks = (int) ((endDay - startDay) / 7) + 1;
+        int[] weeklyCounts = new int[weeks];
+        int daysSmoked = 0;
+        int peakDailyCount = 0;
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT (" + COLUMN_DAY + " - ?) / 7 AS week,"
+                        + " SUM(" + COLUMN_COUNT + "), COUNT(*), MAX(" + COLUMN_COUNT + ")"
+                        + " FROM " + TABLE_DAILY_COUNTS
+                        + " WHERE " + COLUMN_DAY + " BETWEEN ? AND ? AND " + COLUMN_COUNT + " > 0"
+                        + " GROUP BY week",
+                new String[]{String.valueOf(startDay), String.valueOf(startDay), String.valueOf(endDay)});
+
+        try {
+            while (cursor.moveToNext()) {
+                weeklyCounts[cursor.getInt(0)] = cursor.getInt(1);
+                daysSmoked += cursor.getInt(2);
+                peakDailyCount = Math.max(peakDailyCount, cursor.getInt(3));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return new ProgressStats(startDay, weeklyCounts, daysSmoked, peakDailyCount);
+    }
+
+    /**
+     * Returns the in-memory range-sum index over daily counts, building it from the daily
+     * rollup on first use. Later inserts and deletions keep it current, so any day-range
+     * total or rolling average is answered in O(log n) without touching SQLite.
+     * The first call reads the database, so make it off the main thread.
+     *
+     * @return The shared DailyCountIndex.
+     */
+    public DailyCountIndex getDailyCountIndex() {
+        synchronized (dailyIndexLock) {
+            if (dailyIndex == null) {
+                DailyCountIndex index = new DailyCountIndex();
+                SQLiteDatabase db = this.getReadableDatabase();
+                Cursor cursor = db.rawQuery("SELECT " + COLUMN_DAY + ", " + COLUMN_COUNT
+                        + " FROM " + TABLE_DAILY_COUNTS, null);
+                try {
+                    while (cursor.moveToNext()) {
+                        index.add(cursor.getLong(0), cursor.getInt(1));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                dailyIndex = index;
+            }
+            return dailyIndex;
+        }
+    }
+
+    /**
+     * Reads the weekly, monthly and yearly histograms and the hour-of-week heatmap.
+     * These come straight from the rollup tables, whose size grows with the number of
+     * periods rather than the number of logs.
+     *
+     * @return The analytics for the whole history.
+     */
+    public HistoryAnalytics getHistoryAnalytics() {
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        // Rows come back grouped by period type, so each series is a contiguous slice
+        int[] types;
+        long[] periods;
+        int[] counts;
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_PERIOD_TYPE + ", " + COLUMN_PERIOD + ", " + COLUMN_COUNT
+                + " FROM " + TABLE_PERIOD_COUNTS + " WHERE " + COLUMN_COUNT + " > 0"
+                + " ORDER BY " + COLUMN_PERIOD_TYPE + ", " + COLUMN_PERIOD, null);
+        try {
+            types = new int[cursor.getCount()];
+            periods = new long[types.length];
+            counts = new int[types.length];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                types[i] = cursor.getInt(0);
+                periods[i] = cursor.getLong(1);
+                counts[i] = cursor.getInt(2);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        int[] hourOfWeek = new int[LocalDays.HOURS_PER_WEEK];
+        cursor = db.rawQuery("SELECT " + COLUMN_SLOT + ", " + COLUMN_COUNT + " FROM " + TABLE_HOUR_COUNTS, null);
+        try {
+            while (cursor.moveToNext()) {
+                hourOfWeek[cursor.getInt(0)] = cursor.getInt(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return new HistoryAnalytics(
+                sliceSeries(types, periods, counts, PERIOD_WEEK),
+                sliceSeries(types, periods, counts, PERIOD_MONTH),
+                sliceSeries(types, periods, counts, PERIOD_YEAR),
+                hourOfWeek);
+    }
+
     /**
      * Deletes all cigarette logs from the database.
      *
@@ -133,8 +541,279 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public boolean deleteAllLogs() {
         SQLiteDatabase db = this.getWritableDatabase();
-        int deletedRows = db.delete(TABLE_LOGS, null, null);
-        db.close();
+        int deletedRows;
+        synchronized (dailyIndexLock) {
+            db.beginTransaction();
+            try {
+                deletedRows = db.delete(TABLE_LOGS, null, null);
+                rebuildRollups(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (dailyIndex != null) {
+                dailyIndex.clear();
+            }
+        }
         return deletedRows >= 0; // Returns true even if 0 rows were deleted
     }
+
+    /**
+     * Removes one chunk of raw logs older than a cutoff. Their counts stay in the daily,
+     * period and hour-of-week rollups, which were updated when the rows were inserted, so
+     * archiving only drops detail: totals, statistics and analytics are unchanged.
+     * Each chunk is its own short transaction, so loggers are never blocked for long.
+     *
+     * @param cutoffTimestamp Rows strictly older than this are removed.
+     * @param limit           Maximum number of rows to remove in this call.
+     * @return The number of rows removed; fewer than {@code limit} means none are left.
+     */
+    public int archiveLogsBefore(long cutoffTimestamp, int limit) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        int deleted;
+        synchronized (dailyIndexLock) {
+            db.beginTransaction();
+            try {
+                // Oldest first through the timestamp index
+                deleted = db.delete(TABLE_LOGS, COLUMN_ID + " IN (SELECT " + COLUMN_ID + " FROM " + TABLE_LOGS
+                                + " WHERE " + COLUMN_TIMESTAMP + " < ? ORDER BY " + COLUMN_TIMESTAMP + " LIMIT ?)",
+                        new String[]{String.valueOf(cutoffTimestamp), String.valueOf(limit)});
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns up to {@code maxPages} free pages to the file system. Relies on incremental
+     * auto-vacuum, which the version 5 migration enabled.
+     * Must not be called inside a transaction or on the main thread.
+     *
+     * @param maxPages Maximum number of pages to release.
+     * @return The number of free pages still left in the file.
+     */
+    public long reclaimFreePages(int maxPages) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        // The pragma only runs when its statement is stepped; filling the cursor window does that
+        Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + maxPages + ")", null);
+        try {
+            cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+        return DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null);
+    }
+
+    /**
+     * Replaces the whole history with the contents of a backup in one transaction. The
+     * blocks are decoded straight into a single compiled insert statement, and the rollups
+     * are accumulated on the way, so nothing but the current block is held in memory.
+     * If the backup fails to decode, the transaction rolls back and the history is unchanged.
+     * <p>
+     * Days archived by {@link #archiveLogsBefore} keep their counts: a backup taken before
+     * they were archived holds the same cigarettes as raw rows, and one taken after holds
+     * none of them, so the backup's rows for those days are restored without being counted
+     * again. Every other day's rollups are replaced by the backup's.
+     *
+     * @param backup A validated backup.
+     * @return The number of rows restored.
+     * @throws IOException If a block cannot be decoded.
+     */
+    public long replaceAllLogs(LogBackup.Reader backup) throws IOException {
+        SQLiteDatabase db = this.getWritableDatabase();
+        final SQLiteStatement statement = db.compileStatement(LogSchema.INSERT_LOG);
+
+        final long[] restored = new long[1];
+        final RollupDeltas deltas = new RollupDeltas();
+        synchronized (dailyIndexLock) {
+            db.beginTransaction();
+            try {
+                // Take the raw rows out of the rollups; what is left are the archived counts
+                RollupDeltas removed = new RollupDeltas();
+                Cursor cursor = db.rawQuery("SELECT " + COLUMN_TIMESTAMP + " FROM " + TABLE_LOGS, null);
+                try {
+                    while (cursor.moveToNext()) {
+                        removed.remove(cursor.getLong(0));
+                    }
+                } finally {
+                    cursor.close();
+                }
+                removed.applyTo(db);
+                db.delete(TABLE_LOGS, null, null);
+                db.delete(TABLE_DAILY_COUNTS, COLUMN_COUNT + " = 0", null);
+                db.delete(TABLE_PERIOD_COUNTS, COLUMN_COUNT + " = 0", null);
+                db.delete(TABLE_HOUR_COUNTS, COLUMN_COUNT + " = 0", null);
+                final Set<Long> archivedDays = readDays(db);
+
+                backup.forEachBlock((timestamps, count) -> {
+                    for (int i = 0; i < count; i++) {
+                        statement.bindLong(1, timestamps[i]);
+                        if (statement.executeInsert() != -1) {
+                            restored[0]++;
+                            if (!archivedDays.contains(LocalDays.epochDay(timestamps[i]))) {
+                                deltas.add(timestamps[i]);
+                            }
+                        }
+                    }
+                });
+                deltas.applyTo(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+                statement.close();
+            }
+            // Rebuilt from the new daily rollup on next use
+            dailyIndex = null;
+        }
+        return restored[0];
+    }
+
+    /**
+     * Returns every day that has a row in the daily rollup.
+     */
+    private static Set<Long> readDays(SQLiteDatabase db) {
+        Set<Long> days = new HashSet<>();
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_DAY + " FROM " + TABLE_DAILY_COUNTS, null);
+        try {
+            while (cursor.moveToNext()) {
+                days.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return days;
+    }
+
+    /**
+     * Extracts the rows of one period type from columns sorted by type.
+     */
+    private static HistoryAnalytics.Series sliceSeries(int[] types, long[] periods, int[] counts, int type) {
+        int from = 0;
+        while (from < types.length && types[from] < type) {
+            from++;
+        }
+        int to = from;
+        while (to < types.length && types[to] == type) {
+            to++;
+        }
+        return new HistoryAnalytics.Series(Arrays.copyOfRange(periods, from, to), Arrays.copyOfRange(counts, from, to));
+    }
+
+    /**
+     * Recomputes every rollup from the raw logs in one pass. Buckets are computed in Java so
+     * they match {@link LocalDays} exactly, including across DST changes.
+     * Counts of days archived by {@link #archiveLogsBefore} have no raw rows left, so this
+     * must only run when there is nothing archived to lose: on upgrade from before the
+     * rollups existed, or after the history was cleared.
+     *
+     * @param db The writable database.
+     */
+    private void rebuildRollups(SQLiteDatabase db) {
+        db.delete(TABLE_DAILY_COUNTS, null, null);
+        db.delete(TABLE_PERIOD_COUNTS, null, null);
+        db.delete(TABLE_HOUR_COUNTS, null, null);
+
+        RollupDeltas deltas = new RollupDeltas();
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_TIMESTAMP + " FROM " + TABLE_LOGS, null);
+        try {
+            while (cursor.moveToNext()) {
+                deltas.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        deltas.applyTo(db);
+    }
+
+    /**
+     * Accumulates rollup changes for a batch of logs so each touched bucket is written once.
+     * Must be applied inside the transaction that changed the raw logs.
+     */
+    private static final class RollupDeltas {
+
+        private final Map<Long, Integer> days = new HashMap<>();
+        private final List<Map<Long, Integer>> periods = new ArrayList<>();
+        private final int[] hours = new int[LocalDays.HOURS_PER_WEEK];
+
+        RollupDeltas() {
+            // Indexed by PERIOD_WEEK, PERIOD_MONTH and PERIOD_YEAR
+            for (int type = PERIOD_WEEK; type <= PERIOD_YEAR; type++) {
+                periods.add(new HashMap<>());
+            }
+        }
+
+        /**
+         * Counts one log in every bucket it belongs to.
+         *
+         * @param timestamp The log's timestamp in milliseconds.
+         */
+        void add(long timestamp) {
+            count(timestamp, 1);
+        }
+
+        /**
+         * Uncounts one log from every bucket it belongs to.
+         *
+         * @param timestamp The log's timestamp in milliseconds.
+         */
+        void remove(long timestamp) {
+            count(timestamp, -1);
+        }
+
+        private void count(long timestamp, int delta) {
+            long day = LocalDays.epochDay(timestamp);
+            long month = LocalDays.epochMonth(day);
+            increment(days, day, delta);
+            increment(periods.get(PERIOD_WEEK), LocalDays.epochWeek(day), delta);
+            increment(periods.get(PERIOD_MONTH), month, delta);
+            increment(periods.get(PERIOD_YEAR), Math.floorDiv(month, 12L), delta);
+            hours[LocalDays.hourOfWeek(timestamp)] += delta;
+        }
+
+        /**
+         * Writes the accumulated deltas, creating rollup rows as needed.
+         *
+         * @param db The writable database.
+         */
+        void applyTo(SQLiteDatabase db) {
+            for (Map.Entry<Long, Integer> entry : days.entrySet()) {
+                db.execSQL(LogSchema.ENSURE_DAY, new Object[]{entry.getKey()});
+                db.execSQL(LogSchema.ADD_TO_DAY, new Object[]{entry.getValue(), entry.getKey()});
+            }
+            for (int type = PERIOD_WEEK; type <= PERIOD_YEAR; type++) {
+                for (Map.Entry<Long, Integer> entry : periods.get(type).entrySet()) {
+                    db.execSQL(LogSchema.ENSURE_PERIOD, new Object[]{type, entry.getKey()});
+                    db.execSQL(LogSchema.ADD_TO_PERIOD, new Object[]{entry.getValue(), type, entry.getKey()});
+                }
+            }
+            for (int slot = 0; slot < hours.length; slot++) {
+                if (hours[slot] == 0) {
+                    continue;
+                }
+                db.execSQL(LogSchema.ENSURE_SLOT, new Object[]{slot});
+                db.execSQL(LogSchema.ADD_TO_SLOT, new Object[]{hours[slot], slot});
+            }
+        }
+
+        /**
+         * Mirrors the committed daily deltas into the in-memory index, if it has been built.
+         *
+         * @param index The index, or null.
+         */
+        void applyTo(DailyCountIndex index) {
+            if (index == null) {
+                return;
+            }
+            for (Map.Entry<Long, Integer> entry : days.entrySet()) {
+                index.add(entry.getKey(), entry.getValue());
+            }
+        }
+
+        private static void increment(Map<Long, Integer> counts, long key, int delta) {
+            Integer count = counts.get(key);
+            counts.put(key, count == null ? delta : count + delta);
+        }
+    }
 }
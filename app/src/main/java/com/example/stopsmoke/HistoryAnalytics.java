@@ -0,0 +1,119 @@
+package com.example.stopsmoke;
+
+import java.util.Arrays;
+
+/**
+ * Multi-resolution view of the whole smoking history: counts per week, month and year,
+ * plus a 7x24 heatmap of cigarettes per local hour of the week.
+ * Read from rollup tables that are maintained on every insert, so building it never
+ * scans the raw logs. See {@link DatabaseHelper#getHistoryAnalytics()}.
+ */
+public class HistoryAnalytics {
+
+    /**
+     * Counts for consecutive periods of one resolution, as parallel primitive arrays.
+     * Periods with no cigarettes are omitted.
+     */
+    public static class Series {
+
+        private final long[] periods;
+        private final int[] counts;
+
+        public Series(long[] periods, int[] counts) {
+            this.periods = periods;
+            this.counts = counts;
+        }
+
+        /**
+         * @return Number of periods in the series.
+         */
+        public int size() {
+            return periods.length;
+        }
+
+        /**
+         * @param index Position in the series, oldest first.
+         * @return The period key: an epoch week, epoch month or year (see {@link LocalDays}).
+         */
+        public long getPeriod(int index) {
+            return periods[index];
+        }
+
+        /**
+         * @param index Position in the series, oldest first.
+         * @return The number of cigarettes smoked in that period.
+         */
+        public int getCount(int index) {
+            return counts[index];
+        }
+
+        /**
+         * Looks up the count of a single period.
+         *
+         * @param period The period key.
+         * @return The number of cigarettes smoked in that period, or 0 if none.
+         */
+        public int countFor(long period) {
+            int index = Arrays.binarySearch(periods, period);
+            return index >= 0 ? counts[index] : 0;
+        }
+    }
+
+    private final Series weeks;
+    private final Series months;
+    private final Series years;
+    private final int[] hourOfWeek;
+
+    public HistoryAnalytics(Series weeks, Series months, Series years, int[] hourOfWeek) {
+        this.weeks = weeks;
+        this.months = months;
+        this.years = years;
+        this.hourOfWeek = hourOfWeek;
+    }
+
+    /**
+     * @return Counts per Monday-based epoch week.
+     */
+    public Series getWeeks() {
+        return weeks;
+    }
+
+    /**
+     * @return Counts per epoch month ({@code year * 12 + month - 1}).
+     */
+    public Series getMonths() {
+        return months;
+    }
+
+    /**
+     * @return Counts per calendar year.
+     */
+    public Series getYears() {
+        return years;
+    }
+
+    /**
+     * @param dayOfWeek Day of the week, Monday being 0.
+     * @param hour      Local hour of the day, 0 to 23.
+     * @return The number of cigarettes ever smoked in that hour of the week.
+     */
+    public int getHeatmapCount(int dayOfWeek, int hour) {
+        return hourOfWeek[dayOfWeek * 24 + hour];
+    }
+
+    /**
+     * @return The hour-of-week slot with the most cigarettes, Monday 00:00 being 0,
+     * or -1 if nothing has been logged.
+     */
+    public int getPeakHourOfWeek() {
+        int peak = -1;
+        int peakCount = 0;
+        for (int slot = 0; slot < hourOfWeek.length; slot++) {
+            if (hourOfWeek[slot] > peakCount) {
+                peak = slot;
+                peakCount = hourOfWeek[slot];
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.stopsmoke;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Converts between timestamps and local calendar days.
+ * A local day is identified by its epoch day: the number of days since 1970-01-01
+ * in the device's current time zone.
+ */
+public final class LocalDays {
+
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    public static final long MILLIS_PER_HOUR = 60L * 60 * 1000;
+    public static final int HOURS_PER_WEEK = 7 * 24;
+
+    // 1970-01-01 was a Thursday, three days after the Monday that starts epoch week 0
+    private static final int EPOCH_DAY_OF_WEEK_OFFSET = 3;
+
+    private LocalDays() {
+    }
+
+    /**
+     * Returns the local epoch day that contains the given timestamp.
+     *
+     * @param timestampMillis Timestamp in milliseconds since epoch.
+     * @return The local epoch day.
+     */
+    public static long epochDay(long timestampMillis) {
+        long localMillis = timestampMillis + TimeZone.getDefault().getOffset(timestampMillis);
+        return Math.floorDiv(localMillis, MILLIS_PER_DAY);
+    }
+
+    /**
+     * Returns the timestamp of local midnight at the start of the given epoch day.
+     *
+     * @param epochDay The local epoch day.
+     * @return Start of the day in milliseconds since epoch.
+     */
+    public static long startOfDay(long epochDay) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(1970, Calendar.JANUARY, 1);
+        calendar.add(Calendar.DAY_OF_YEAR, (int) epochDay);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Returns the Monday-based week that contains the given local epoch day.
+     * Week 0 starts on Monday 1969-12-29.
+     *
+     * @param epochDay The local epoch day.
+     * @return The epoch week.
+     */
+    public static long epochWeek(long epochDay) {
+        return Math.floorDiv(epochDay + EPOCH_DAY_OF_WEEK_OFFSET, 7L);
+    }
+
+    /**
+     * Returns the local epoch day of the Monday that starts the given epoch week.
+     *
+     * @param epochWeek The epoch week.
+     * @return The local epoch day.
+     */
+    public static long startOfWeek(long epochWeek) {
+        return epochWeek * 7 - EPOCH_DAY_OF_WEEK_OFFSET;
+    }
+
+    /**
+     * Returns the month that contains the given local epoch day, counted as
+     * {@code year * 12 + (month - 1)} so months sort and subtract naturally.
+     *
+     * @param epochDay The local epoch day.
+     * @return The epoch month.
+     */
+    public static long epochMonth(long epochDay) {
+        // Proleptic Gregorian civil-from-days, with years starting in March
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        long month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Returns the local hour of the week a timestamp falls in, Monday 00:00 being slot 0.
+     *
+     * @param timestampMillis Timestamp in milliseconds since epoch.
+     * @return A slot between 0 and {@link #HOURS_PER_WEEK} - 1.
+     */
+    public static int hourOfWeek(long timestampMillis) {
+        long localMillis = timestampMillis + TimeZone.getDefault().getOffset(timestampMillis);
+        long day = Math.floorDiv(localMillis, MILLIS_PER_DAY);
+        // floorMod(long, int) is Java 9 and API 31; the long overload needs no backport
+        int dayOfWeek = (int) Math.floorMod(day + EPOCH_DAY_OF_WEEK_OFFSET, 7L);
+        int hour = (int) (Math.floorMod(localMillis, MILLIS_PER_DAY) / MILLIS_PER_HOUR);
+        return dayOfWeek * 24 + hour;
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.stopsmoke;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary backup of the log timestamps.
+ * <p>
+ * Layout, all integers little-endian:
+ * <pre>
+ *   header   magic "SSBK" (int), version (int)
+ *   blocks   per block: zig-zag varint deltas between consecutive timestamps
+ *   index    per block: first timestamp (long), row count (int), offset (long),
+ *            length (int), CRC32 of the block (int)
+ *   trailer  index offset (long), block count (int), row count (long),
+ *            CRC32 of the index (int), magic (int)
+ * </pre>
+ * Timestamps are written in ascending order, so consecutive deltas are small and most take
+ * three or four bytes instead of eight. Each block holds up to {@link #ROWS_PER_BLOCK} rows
+ * and starts from the absolute timestamp kept in the index, so blocks decode independently.
+ * The writer streams to any OutputStream; the reader works on a ByteBuffer, typically a
+ * memory-mapped file, and checks every checksum before handing out a single row.
+ */
+public final class LogBackup {
+
+    static final int MAGIC = 0x4B425353; // "SSBK" read little-endian
+    static final int VERSION = 1;
+    static final int ROWS_PER_BLOCK = 4096;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int INDEX_ENTRY_SIZE = 28;
+    private static final int TRAILER_SIZE = 28;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private LogBackup() {
+    }
+
+    /**
+     * Receives decoded blocks of timestamps.
+     */
+    public interface BlockVisitor {
+        /**
+         * @param timestamps Buffer holding the block's timestamps in ascending order; reused
+         *                   for the next block, so copy anything that must be kept.
+         * @param count      Number of valid entries in the buffer.
+         */
+        void visit(long[] timestamps, int count);
+    }
+
+    /**
+     * Writes a backup to a stream one timestamp at a time. Only the current block and the
+     * block index are held in memory. Not thread-safe.
+     */
+    public static final class Writer {
+
+        private final OutputStream out;
+        private final byte[] block = new byte[ROWS_PER_BLOCK * MAX_VARINT_BYTES];
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer index = newBuffer(16 * INDEX_ENTRY_SIZE);
+
+        private long offset;
+        private int blockLength;
+        private int blockRows;
+        private long blockFirst;
+        private long previous;
+        private int blockCount;
+        private long rowCount;
+
+        /**
+         * Writes the header.
+         *
+         * @param out Destination; callers should pass a buffered stream.
+         */
+        public Writer(OutputStream out) throws IOException {
+            this.out = out;
+            ByteBuffer header = newBuffer(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION);
+            out.write(header.array());
+            offset = HEADER_SIZE;
+        }
+
+        /**
+         * Appends a timestamp. Timestamps should arrive in ascending order to keep the deltas
+         * small, but any order round-trips.
+         *
+         * @param timestamp The timestamp in milliseconds since epoch.
+         */
+        public void add(long timestamp) throws IOException {
+            if (blockRows == 0) {
+                blockFirst = timestamp;
+            } else {
+                long delta = timestamp - previous;
+                blockLength = writeVarint(block, blockLength, (delta << 1) ^ (delta >> 63));
+            }
+            previous = timestamp;
+            blockRows++;
+            rowCount++;
+            if (blockRows == ROWS_PER_BLOCK) {
+                flushBlock();
+            }
+        }
+
+        /**
+         * Writes the last block, the index and the trailer, then flushes the stream.
+         * The stream itself stays open.
+         *
+         * @return The number of timestamps written.
+         */
+        public long finish() throws IOException {
+            if (blockRows > 0) {
+                flushBlock();
+            }
+            index.flip();
+            crc.reset();
+            crc.update(index.array(), 0, index.limit());
+            out.write(index.array(), 0, index.limit());
+
+            ByteBuffer trailer = newBuffer(TRAILER_SIZE);
+            trailer.putLong(offset).putInt(blockCount).putLong(rowCount).putInt((int) crc.getValue()).putInt(MAGIC);
+            out.write(trailer.array());
+            out.flush();
+            return rowCount;
+        }
+
+        private void flushBlock() throws IOException {
+            crc.reset();
+            crc.update(block, 0, blockLength);
+            out.write(block, 0, blockLength);
+
+            if (index.remaining() < INDEX_ENTRY_SIZE) {
+                ByteBuffer grown = newBuffer(index.capacity() * 2);
+                index.flip();
+                grown.put(index);
+                index = grown;
+            }
+            index.putLong(blockFirst).putInt(blockRows).putLong(offset).putInt(blockLength).putInt((int) crc.getValue());
+
+            offset += blockLength;
+            blockCount++;
+            blockLength = 0;
+            blockRows = 0;
+        }
+    }
+
+    /**
+     * A validated backup, ready to be decoded block by block.
+     */
+    public static final class Reader {
+
+        private final ByteBuffer data;
+        private final ByteBuffer index;
+        private final int blockCount;
+        private final long rowCount;
+
+        private Reader(ByteBuffer data, ByteBuffer index, int blockCount, long rowCount) {
+            this.data = data;
+            this.index = index;
+            this.blockCount = blockCount;
+            this.rowCount = rowCount;
+        }
+
+        /**
+         * Checks the header, the trailer, the index and every block checksum. Nothing is
+         * decoded yet, so a corrupt file is rejected before any row reaches the database.
+         *
+         * @param buffer The whole backup, e.g. a memory-mapped file. Its position is ignored.
+         * @return A reader over the backup.
+         * @throws IOException If the file is not a backup or any part of it is damaged.
+         */
+        public static Reader open(ByteBuffer buffer) throws IOException {
+            ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            data.clear();
+            int size = data.limit();
+            if (size < HEADER_SIZE + TRAILER_SIZE || data.getInt(0) != MAGIC) {
+                throw new IOException("Not a StopSmoke backup");
+            }
+            if (data.getInt(4) != VERSION) {
+                throw new IOException("Unsupported backup version " + data.getInt(4));
+            }
+
+            int trailer = size - TRAILER_SIZE;
+            long indexOffset = data.getLong(trailer);
+            int blockCount = data.getInt(trailer + 8);
+            long rowCount = data.getLong(trailer + 12);
+            int indexCrc = data.getInt(trailer + 20);
+            if (data.getInt(trailer + 24) != MAGIC || blockCount < 0 || indexOffset < HEADER_SIZE
+                    || indexOffset + (long) blockCount * INDEX_ENTRY_SIZE != trailer) {
+                throw new IOException("Damaged backup trailer");
+            }
+
+            ByteBuffer index = slice(data, (int) indexOffset, blockCount * INDEX_ENTRY_SIZE);
+            if (crc(index) != indexCrc) {
+                throw new IOException("Damaged backup index");
+            }
+
+            long rows = 0;
+            long expectedOffset = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < blockCount; i++) {
+                int entry = i * INDEX_ENTRY_SIZE;
+                int blockRows = index.getInt(entry + 8);
+                long blockOffset = index.getLong(entry + 12);
+                int blockLength = index.getInt(entry + 20);
+                if (blockRows <= 0 || blockRows > ROWS_PER_BLOCK || blockOffset != expectedOffset
+                        || blockLength < 0 || blockOffset + blockLength > indexOffset) {
+                    throw new IOException("Damaged backup index entry " + i);
+                }
+                crc.reset();
+                crc.update(slice(data, (int) blockOffset, blockLength));
+                if ((int) crc.getValue() != index.getInt(entry + 24)) {
+                    throw new IOException("Damaged backup block " + i);
+                }
+                rows += blockRows;
+                expectedOffset += blockLength;
+            }
+            if (rows != rowCount || expectedOffset != indexOffset) {
+                throw new IOException("Backup row count does not match its blocks");
+            }
+            return new Reader(data, index, blockCount, rowCount);
+        }
+
+        /**
+         * @return The number of timestamps in the backup.
+         */
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        /**
+         * Decodes every block in order into one reused buffer.
+         *
+         * @param visitor Receives each block.
+         * @throws IOException If a block does not decode to its recorded row count.
+         */
+        public void forEachBlock(BlockVisitor visitor) throws IOException {
+            long[] timestamps = new long[ROWS_PER_BLOCK];
+            for (int i = 0; i < blockCount; i++) {
+                int entry = i * INDEX_ENTRY_SIZE;
+                int blockRows = index.getInt(entry + 8);
+                ByteBuffer block = slice(data, (int) index.getLong(entry + 12), index.getInt(entry + 20));
+
+                long timestamp = index.getLong(entry);
+                timestamps[0] = timestamp;
+                try {
+                    for (int row = 1; row < blockRows; row++) {
+                        long zigzag = readVarint(block);
+                        timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+                        timestamps[row] = timestamp;
+                    }
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("Truncated backup block " + i);
+                }
+                if (block.hasRemaining()) {
+                    throw new IOException("Trailing data in backup block " + i);
+                }
+                visitor.visit(timestamps, blockRows);
+            }
+        }
+    }
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer slice(ByteBuffer data, int offset, int length) {
+        ByteBuffer slice = data.duplicate();
+        slice.position(offset).limit(offset + length);
+        return slice.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(ByteBuffer in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.stopsmoke;
+
+import java.util.Arrays;
+
+/**
+ * Column-oriented buffer of cigarette logs: ids and timestamps are kept in parallel
+ * primitive arrays instead of one CigaretteLog object per row.
+ * The arrays grow geometrically, so filling the buffer from a cursor costs a handful
+ * of allocations regardless of the number of rows.
+ */
+public class LogColumns implements DatabaseHelper.LogVisitor {
+
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private int[] ids;
+    private long[] timestamps;
+    private int size;
+
+    /**
+     * Creates an empty buffer with a default capacity.
+     */
+    public LogColumns() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param initialCapacity Number of rows to reserve space for.
+     */
+    public LogColumns(int initialCapacity) {
+        ids = new int[Math.max(initialCapacity, 1)];
+        timestamps = new long[ids.length];
+    }
+
+    /**
+     * Appends a row, growing the arrays if needed.
+     *
+     * @param id        The log entry ID.
+     * @param timestamp The timestamp in milliseconds since epoch.
+     */
+    public void add(int id, long timestamp) {
+        if (size == ids.length) {
+            int newCapacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, newCapacity);
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+        }
+        ids[size] = id;
+        timestamps[size] = timestamp;
+        size++;
+    }
+
+    /**
+     * Appends every row of another buffer.
+     *
+     * @param other The rows to append.
+     */
+    public void addAll(LogColumns other) {
+        for (int i = 0; i < other.size; i++) {
+            add(other.ids[i], other.timestamps[i]);
+        }
+    }
+
+    @Override
+    public void visit(int id, long timestamp) {
+        add(id, timestamp);
+    }
+
+    /**
+     * @return The number of rows in the buffer.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index Row position.
+     * @return The log entry ID at that position.
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * @param index Row position.
+     * @return The timestamp at that position, in milliseconds since epoch.
+     */
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    /**
+     * Returns a trimmed copy of the timestamp column.
+     *
+     * @return The timestamps, one per row.
+     */
+    public long[] timestampsArray() {
+        return Arrays.copyOf(timestamps, size);
+    }
+
+    /**
+     * Removes all rows while keeping the allocated arrays for reuse.
+     */
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.stopsmoke;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Loads the log history newest-first in fixed-size pages as the user scrolls.
+ * Pages are fetched on the repository's reader threads with keyset pagination on (timestamp, id),
+ * so every page is an index seek no matter how deep into the history it is.
+ */
+public class LogPager {
+
+    /**
+     * Receives loaded data on the main thread.
+     */
+    public interface Listener {
+        /**
+         * Called with the next page, to be appended to the list.
+         */
+        void onPageLoaded(LogColumns page);
+
+        /**
+         * Called with a fresh copy of every row loaded so far, to replace the list.
+         */
+        void onWindowRefreshed(LogColumns window);
+    }
+
+    private static final int PAGE_SIZE = 50;
+
+    // Start loading the next page when this many rows are left below the viewport
+    private static final int PREFETCH_DISTANCE = 15;
+
+    private final LogRepository repository;
+    private Listener listener;
+
+    // Keyset cursor: the last row delivered so far
+    private long lastTimestamp = Long.MAX_VALUE;
+    private int lastId = Integer.MAX_VALUE;
+
+    private boolean loading;
+    private boolean endReached;
+    private boolean refreshRequested;
+
+    public LogPager(LogRepository repository, Listener listener) {
+        this.repository = repository;
+        this.listener = listener;
+    }
+
+    /**
+     * Requests the next page unless one is already in flight or the history is exhausted.
+     * Must be called on the main thread.
+     */
+    public void loadNextPage() {
+        if (loading || endReached || listener == null) {
+            return;
+        }
+        loading = true;
+
+        repository.getLogPageBefore(lastTimestamp, lastId, PAGE_SIZE, null, this::deliver);
+    }
+
+    /**
+     * Re-reads every row loaded so far, picking up inserts and deletions.
+     * If a load is in flight the refresh runs right after it. Must be called on the main thread.
+     */
+    public void refresh() {
+        if (listener == null) {
+            return;
+        }
+        if (loading) {
+            refreshRequested = true;
+            return;
+        }
+        if (lastTimestamp == Long.MAX_VALUE) {
+            // Nothing loaded yet, so a refresh is just the first page
+            endReached = false;
+            loadNextPage();
+            return;
+        }
+        loading = true;
+
+        repository.read(db -> db.getLogsSince(lastTimestamp, lastId), null, this::deliverWindow);
+    }
+
+    private void deliverWindow(LogColumns window) {
+        loading = false;
+        if (listener == null) {
+            return;
+        }
+        if (window.size() == 0) {
+            // History was cleared; start over from the newest row next time
+            lastTimestamp = Long.MAX_VALUE;
+            lastId = Integer.MAX_VALUE;
+            endReached = false;
+        }
+        listener.onWindowRefreshed(window);
+        runRequestedRefresh();
+    }
+
+    private void runRequestedRefresh() {
+        if (refreshRequested) {
+            refreshRequested = false;
+            refresh();
+        }
+    }
+
+    private void deliver(LogColumns page) {
+        loading = false;
+        if (listener == null) {
+            return;
+        }
+        if (page.size() < PAGE_SIZE) {
+            endReached = true;
+        }
+        if (page.size() > 0) {
+            int last = page.size() - 1;
+            lastTimestamp = page.getTimestamp(last);
+            lastId = page.getId(last);
+        }
+        listener.onPageLoaded(page);
+        runRequestedRefresh();
+    }
+
+    /**
+     * Returns a scroll listener that loads the next page as the list nears its end.
+     *
+     * @return A listener to attach to a RecyclerView using a LinearLayoutManager.
+     */
+    public RecyclerView.OnScrollListener scrollListener() {
+        return new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager == null) {
+                    return;
+                }
+                int lastVisible = layoutManager.findLastVisibleItemPosition();
+                if (lastVisible >= layoutManager.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        };
+    }
+
+    /**
+     * Stops delivering pages.
+     */
+    public void close() {
+        listener = null;
+    }
+}
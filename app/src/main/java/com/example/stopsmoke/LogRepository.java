@@ -0,0 +1,200 @@
+package com.example.stopsmoke;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs all database access off the main thread.
+ * Writes go through one serialized executor so they never contend with each other;
+ * reads run on a small pool and, thanks to WAL, never wait on writes.
+ * Results are delivered on the main thread, and dropped if the caller has been destroyed.
+ */
+public class LogRepository {
+
+    /**
+     * Receives the result of an asynchronous operation on the main thread.
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /**
+     * A unit of database work executed on a background thread.
+     */
+    public interface Query<T> {
+        T run(DatabaseHelper db);
+    }
+
+    private static final int READ_THREADS = 2;
+
+    private static LogRepository instance;
+
+    private final Context context;
+    private final DatabaseHelper db;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService readExecutor = Executors.newFixedThreadPool(READ_THREADS);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Jobs submitted but not yet finished, including the delivery of their result
+    private final AtomicInteger pendingJobs = new AtomicInteger();
+    @Nullable
+    private volatile Runnable idleCallback;
+
+    /**
+     * Returns the app-scoped repository.
+     *
+     * @param context Any context; the application context is retained.
+     * @return The shared LogRepository instance.
+     */
+    public static synchronized LogRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new LogRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LogRepository(Context context) {
+        this.context = context;
+        this.db = DatabaseHelper.getInstance(context);
+    }
+
+    /**
+     * Loads the shared summary snapshot if it has not been loaded yet. Runs on the writer
+     * thread so the load cannot interleave with a write and miss it.
+     *
+     * @param owner    Lifecycle of the caller, or null to always deliver.
+     * @param callback Receives the current snapshot.
+     */
+    public void loadSummary(@Nullable LifecycleOwner owner, @Nullable Callback<SummarySnapshot> callback) {
+        write(db -> SummaryCache.ensureLoaded(context, db), owner, callback);
+    }
+
+    /**
+     * Loads one keyset page of logs on a reader thread.
+     *
+     * @see DatabaseHelper#getLogPageBefore(long, int, int)
+     */
+    public void getLogPageBefore(long beforeTimestamp, int beforeId, int limit,
+                                 @Nullable LifecycleOwner owner, Callback<LogColumns> callback) {
+        read(db -> db.getLogPageBefore(beforeTimestamp, beforeId, limit), owner, callback);
+    }
+
+    /**
+     * Runs an arbitrary read on the reader pool.
+     */
+    public <T> void read(Query<T> query, @Nullable LifecycleOwner owner, @Nullable Callback<T> callback) {
+        submit(readExecutor, query, owner, callback);
+    }
+
+    /**
+     * Runs an arbitrary write on the serialized writer thread.
+     */
+    public <T> void write(Query<T> query, @Nullable LifecycleOwner owner, @Nullable Callback<T> callback) {
+        submit(writeExecutor, query, owner, callback);
+    }
+
+    /**
+     * Runs a write on the serialized writer thread and blocks until it has finished. For
+     * workers that are already on a background thread but must not write beside the
+     * writer; never call it on the main thread or from inside another write.
+     *
+     * @param query The write to run.
+     * @return The result of the write.
+     * @throws RuntimeException Whatever the write threw, or an IllegalStateException if the
+     *                          calling thread was interrupted while waiting.
+     */
+    public <T> T writeAndWait(Query<T> query) {
+        pendingJobs.incrementAndGet();
+        Future<T> future = writeExecutor.submit(() -> {
+            try {
+                return query.run(db);
+            } finally {
+                finishJob();
+            }
+        });
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a write", e);
+        }
+    }
+
+    /**
+     * Returns whether every submitted job has finished and delivered its result. Lets UI
+     * tests wait for background work, e.g. through an Espresso IdlingResource.
+     *
+     * @return True if nothing is queued, running or waiting for delivery.
+     */
+    @VisibleForTesting
+    public boolean isIdle() {
+        return pendingJobs.get() == 0;
+    }
+
+    /**
+     * Sets a callback run each time the repository becomes idle, on the thread that
+     * finished the last job.
+     *
+     * @param callback The callback, or null to remove it.
+     */
+    @VisibleForTesting
+    public void setIdleCallback(@Nullable Runnable callback) {
+        idleCallback = callback;
+    }
+
+    private <T> void submit(ExecutorService executor, Query<T> query,
+                            @Nullable LifecycleOwner owner, @Nullable Callback<T> callback) {
+        pendingJobs.incrementAndGet();
+        executor.execute(() -> {
+            T result;
+            try {
+                result = query.run(db);
+            } catch (RuntimeException e) {
+                finishJob();
+                throw e;
+            }
+            if (callback == null) {
+                finishJob();
+                return;
+            }
+            mainHandler.post(() -> {
+                try {
+                    // Skip delivery to screens that have gone away in the meantime
+                    if (owner == null || owner.getLifecycle().getCurrentState() != Lifecycle.State.DESTROYED) {
+                        callback.onResult(result);
+                    }
+                } finally {
+                    finishJob();
+                }
+            });
+        });
+    }
+
+    private void finishJob() {
+        Runnable callback = idleCallback;
+        if (pendingJobs.decrementAndGet() == 0 && callback != null) {
+            callback.run();
+        }
+    }
+}
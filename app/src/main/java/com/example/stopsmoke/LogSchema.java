@@ -0,0 +1,94 @@
+package com.example.stopsmoke;
+
+/**
+ * Table layout and hot-path SQL of the log database, shared by {@link DatabaseHelper} and
+ * the JVM benchmarks so both always run the same statements. Plain Java with no Android
+ * types, so the benchmark module can compile it.
+ * The DDL is replayed by the migrations; changing it needs a new database version.
+ */
+public final class LogSchema {
+
+    // Raw logs
+    public static final String TABLE_LOGS = "cigarette_logs";
+    public static final String COLUMN_ID = "id";
+    public static final String COLUMN_TIMESTAMP = "timestamp";
+    public static final String INDEX_LOGS_TIMESTAMP = "idx_cigarette_logs_timestamp";
+
+    // Daily rollup table: one row per local epoch day (see LocalDays)
+    public static final String TABLE_DAILY_COUNTS = "daily_counts";
+    public static final String COLUMN_DAY = "day";
+    public static final String COLUMN_COUNT = "count";
+
+    // Weekly, monthly and yearly rollups, keyed by period type and period (see LocalDays)
+    public static final String TABLE_PERIOD_COUNTS = "period_counts";
+    public static final String COLUMN_PERIOD_TYPE = "period_type";
+    public static final String COLUMN_PERIOD = "period";
+
+    // Hour-of-week heatmap: one row per local hour of the week, Monday 00:00 being slot 0
+    public static final String TABLE_HOUR_COUNTS = "hour_of_week_counts";
+    public static final String COLUMN_SLOT = "slot";
+
+    // Period types in the period rollup table
+    public static final int PERIOD_WEEK = 0;
+    public static final int PERIOD_MONTH = 1;
+    public static final int PERIOD_YEAR = 2;
+
+    // Version 1
+    public static final String CREATE_LOGS_TABLE = "CREATE TABLE " + TABLE_LOGS + "("
+            + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COLUMN_TIMESTAMP + " INTEGER"
+            + ")";
+
+    // Version 2
+    public static final String CREATE_TIMESTAMP_INDEX = "CREATE INDEX IF NOT EXISTS " + INDEX_LOGS_TIMESTAMP
+            + " ON " + TABLE_LOGS + "(" + COLUMN_TIMESTAMP + ")";
+
+    // Version 3
+    public static final String CREATE_DAILY_COUNTS = "CREATE TABLE IF NOT EXISTS " + TABLE_DAILY_COUNTS + "("
+            + COLUMN_DAY + " INTEGER PRIMARY KEY,"
+            + COLUMN_COUNT + " INTEGER NOT NULL DEFAULT 0"
+            + ")";
+
+    // Version 4
+    public static final String CREATE_PERIOD_COUNTS = "CREATE TABLE IF NOT EXISTS " + TABLE_PERIOD_COUNTS + "("
+            + COLUMN_PERIOD_TYPE + " INTEGER NOT NULL,"
+            + COLUMN_PERIOD + " INTEGER NOT NULL,"
+            + COLUMN_COUNT + " INTEGER NOT NULL DEFAULT 0,"
+            + "PRIMARY KEY (" + COLUMN_PERIOD_TYPE + ", " + COLUMN_PERIOD + ")"
+            + ")";
+    public static final String CREATE_HOUR_COUNTS = "CREATE TABLE IF NOT EXISTS " + TABLE_HOUR_COUNTS + "("
+            + COLUMN_SLOT + " INTEGER PRIMARY KEY,"
+            + COLUMN_COUNT + " INTEGER NOT NULL DEFAULT 0"
+            + ")";
+
+    // Binds the timestamp
+    public static final String INSERT_LOG = "INSERT INTO " + TABLE_LOGS + " (" + COLUMN_TIMESTAMP + ") VALUES (?)";
+
+    // Binds the first and last timestamp; returns id and timestamp, oldest first
+    public static final String SELECT_LOGS_BETWEEN = "SELECT " + COLUMN_ID + ", " + COLUMN_TIMESTAMP
+            + " FROM " + TABLE_LOGS + " WHERE " + COLUMN_TIMESTAMP + " BETWEEN ? AND ?"
+            + " ORDER BY " + COLUMN_TIMESTAMP + " ASC";
+
+    // Binds the epoch day
+    public static final String SELECT_DAY_COUNT = "SELECT " + COLUMN_COUNT + " FROM " + TABLE_DAILY_COUNTS
+            + " WHERE " + COLUMN_DAY + " = ?";
+
+    // Rollup upserts: each ENSURE statement creates the bucket, the ADD statement that
+    // follows it binds the delta, then the bucket's key
+    public static final String ENSURE_DAY = "INSERT OR IGNORE INTO " + TABLE_DAILY_COUNTS
+            + " (" + COLUMN_DAY + ", " + COLUMN_COUNT + ") VALUES (?, 0)";
+    public static final String ADD_TO_DAY = "UPDATE " + TABLE_DAILY_COUNTS
+            + " SET " + COLUMN_COUNT + " = " + COLUMN_COUNT + " + ? WHERE " + COLUMN_DAY + " = ?";
+    public static final String ENSURE_PERIOD = "INSERT OR IGNORE INTO " + TABLE_PERIOD_COUNTS
+            + " (" + COLUMN_PERIOD_TYPE + ", " + COLUMN_PERIOD + ", " + COLUMN_COUNT + ") VALUES (?, ?, 0)";
+    public static final String ADD_TO_PERIOD = "UPDATE " + TABLE_PERIOD_COUNTS
+            + " SET " + COLUMN_COUNT + " = " + COLUMN_COUNT + " + ?"
+            + " WHERE " + COLUMN_PERIOD_TYPE + " = ? AND " + COLUMN_PERIOD + " = ?";
+    public static final String ENSURE_SLOT = "INSERT OR IGNORE INTO " + TABLE_HOUR_COUNTS
+            + " (" + COLUMN_SLOT + ", " + COLUMN_COUNT + ") VALUES (?, 0)";
+    public static final String ADD_TO_SLOT = "UPDATE " + TABLE_HOUR_COUNTS
+            + " SET " + COLUMN_COUNT + " = " + COLUMN_COUNT + " + ? WHERE " + COLUMN_SLOT + " = ?";
+
+    private LogSchema() {
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.stopsmoke;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Streaming CSV and JSON encoding of the log history, used by {@link LogTransferWorker}.
+ * The encoder writes one row at a time and the parser hands timestamps over one at a time,
+ * so neither side ever holds more than a row in memory, however long the history is.
+ * Import only needs the timestamps; ids are exported for reference and are reassigned
+ * on import.
+ */
+public final class LogTransfer {
+
+    /**
+     * The supported file formats.
+     */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        JSON("application/json", "json");
+
+        final String mimeType;
+        final String extension;
+
+        Format(String mimeType, String extension) {
+            this.mimeType = mimeType;
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Receives parsed timestamps in file order.
+     */
+    public interface TimestampSink {
+        /**
+         * @param timestamp A log timestamp in milliseconds since epoch.
+         * @throws IOException If the timestamp could not be stored.
+         */
+        void accept(long timestamp) throws IOException;
+    }
+
+    // Earliest timestamp accepted on import: 2000-01-01T00:00:00Z
+    static final long MIN_TIMESTAMP = 946684800000L;
+
+    private static final String CSV_HEADER = "id,timestamp";
+    private static final String TIMESTAMP_KEY = "timestamp";
+
+    private LogTransfer() {
+    }
+
+    /**
+     * Writes rows in one format to a writer. Numbers are formatted into a reused buffer,
+     * so writing a row does not allocate. Not thread-safe.
+     */
+    public static final class Encoder {
+
+        private final Writer writer;
+        private final Format format;
+        private final char[] digits = new char[20];
+        private boolean first = true;
+
+        /**
+         * @param writer Destination; callers should pass a buffered writer.
+         * @param format The format to write.
+         */
+        public Encoder(Writer writer, Format format) {
+            this.writer = writer;
+            this.format = format;
+        }
+
+        /**
+         * Writes the CSV header or opens the JSON array.
+         */
+        public void begin() throws IOException {
+            writer.write(format == Format.CSV ? CSV_HEADER + "\n" : "[");
+        }
+
+        /**
+         * Writes one log row.
+         *
+         * @param id        The log entry ID.
+         * @param timestamp The timestamp in milliseconds since epoch.
+         */
+        public void write(int id, long timestamp) throws IOException {
+            if (format == Format.CSV) {
+                writeNumber(id);
+                writer.write(',');
+                writeNumber(timestamp);
+                writer.write('\n');
+            } else {
+                writer.write(first ? "\n{\"id\":" : ",\n{\"id\":");
+                writeNumber(id);
+                writer.write(",\"timestamp\":");
+                writeNumber(timestamp);
+                writer.write('}');
+            }
+            first = false;
+        }
+
+        /**
+         * Closes the JSON array and flushes the writer. The writer itself stays open.
+         */
+        public void end() throws IOException {
+            if (format == Format.JSON) {
+                writer.write("\n]\n");
+            }
+            writer.flush();
+        }
+
+        private void writeNumber(long value) throws IOException {
+            if (value == Long.MIN_VALUE) {
+                writer.write(Long.toString(value));
+                return;
+            }
+            boolean negative = value < 0;
+            long rest = negative ? -value : value;
+            int pos = digits.length;
+            do {
+                digits[--pos] = (char) ('0' + rest % 10);
+                rest /= 10;
+            } while (rest > 0);
+            if (negative) {
+                digits[--pos] = '-';
+            }
+            writer.write(digits, pos, digits.length - pos);
+        }
+    }
+
+    /**
+     * Parses an exported file incrementally. The format is detected from the first
+     * non-blank character: JSON starts with '[' or '{', anything else is read as CSV.
+     *
+     * @param reader Source; read one character at a time, so pass a buffered reader.
+     * @param sink   Receives every timestamp in file order.
+     * @return The number of timestamps parsed.
+     * @throws IOException If reading fails or the content is malformed.
+     */
+    public static long parse(Reader reader, TimestampSink sink) throws IOException {
+        int c = skipWhitespace(reader, reader.read());
+        if (c == '[' || c == '{') {
+            return parseJson(reader, c, sink);
+        }
+        return parseCsv(reader, c, sink);
+    }
+
+    /**
+     * Parses an exported file like {@link #parse(Reader, TimestampSink)}, rejecting any
+     * timestamp outside a range. This catches files in the wrong unit, such as seconds or
+     * microseconds, before a single row reaches the sink.
+     *
+     * @param reader       Source; read one character at a time, so pass a buffered reader.
+     * @param minTimestamp Earliest accepted timestamp in milliseconds since epoch.
+     * @param maxTimestamp Latest accepted timestamp in milliseconds since epoch.
+     * @param sink         Receives every timestamp in file order.
+     * @return The number of timestamps parsed.
+     * @throws IOException If reading fails, the content is malformed or a timestamp is out of range.
+     */
+    public static long parse(Reader reader, long minTimestamp, long maxTimestamp, TimestampSink sink)
+            throws IOException {
+        final long[] row = new long[1];
+        return parse(reader, timestamp -> {
+            row[0]++;
+            if (timestamp < minTimestamp || timestamp > maxTimestamp) {
+                throw new IOException("Timestamp " + timestamp + " in row " + row[0] + " is out of range;"
+                        + " expected milliseconds since epoch between " + minTimestamp + " and " + maxTimestamp);
+            }
+            sink.accept(timestamp);
+        });
+    }
+
+    /**
+     * Reads CSV line by line into a reused buffer. A header naming a "timestamp" column
+     * selects that column; without a header the first column is used. Blank lines are skipped.
+     */
+    private static long parseCsv(Reader reader, int c, TimestampSink sink) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int timestampColumn = 0;
+        int lineNumber = 0;
+        long count = 0;
+
+        while (c != -1) {
+            line.setLength(0);
+            while (c != -1 && c != '\n') {
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+                c = reader.read();
+            }
+            if (c == '\n') {
+                c = reader.read();
+            }
+            lineNumber++;
+
+            int fieldStart = fieldStart(line, timestampColumn);
+            int fieldEnd = fieldEnd(line, fieldStart);
+            if (lineNumber == 1 && !isNumber(line, fieldStart, fieldEnd)) {
+                timestampColumn = headerColumn(line);
+                continue;
+            }
+            if (isBlank(line)) {
+                continue;
+            }
+            if (fieldStart == fieldEnd) {
+                throw new IOException("Missing timestamp on line " + lineNumber);
+            }
+            sink.accept(parseLong(line, fieldStart, fieldEnd, lineNumber));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the index of the "timestamp" column named by a header line.
+     */
+    private static int headerColumn(CharSequence header) throws IOException {
+        int columns = 1;
+        for (int i = 0; i < header.length(); i++) {
+            if (header.charAt(i) == ',') {
+                columns++;
+            }
+        }
+        for (int column = 0; column < columns; column++) {
+            int start = fieldStart(header, column);
+            int end = fieldEnd(header, start);
+            if (TIMESTAMP_KEY.equalsIgnoreCase(header.subSequence(start, end).toString())) {
+                return column;
+            }
+        }
+        throw new IOException("No timestamp column in header");
+    }
+
+    /**
+     * Returns where a column's value starts, skipping leading blanks; the line length if the
+     * line has fewer columns.
+     */
+    private static int fieldStart(CharSequence line, int column) {
+        int pos = 0;
+        for (int i = 0; i < column; i++) {
+            while (pos < line.length() && line.charAt(pos) != ',') {
+                pos++;
+            }
+            if (pos == line.length()) {
+                return pos;
+            }
+            pos++;
+        }
+        while (pos < line.length() && line.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns where the value starting at {@code start} ends, excluding trailing blanks.
+     */
+    private static int fieldEnd(CharSequence line, int start) {
+        int end = start;
+        while (end < line.length() && line.charAt(end) != ',') {
+            end++;
+        }
+        while (end > start && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Scans JSON for "timestamp" members and parses their numeric values. Everything else
+     * is skipped, so member order and extra members do not matter.
+     */
+    private static long parseJson(Reader reader, int c, TimestampSink sink) throws IOException {
+        StringBuilder string = new StringBuilder();
+        long count = 0;
+        while (c != -1) {
+            if (c == '"') {
+                readString(reader, string);
+                c = skipWhitespace(reader, reader.read());
+                if (c == ':' && TIMESTAMP_KEY.contentEquals(string)) {
+                    c = skipWhitespace(reader, reader.read());
+                    StringBuilder number = string;
+                    number.setLength(0);
+                    while (c == '-' || (c >= '0' && c <= '9')) {
+                        number.append((char) c);
+                        c = reader.read();
+                    }
+                    sink.accept(parseLong(number, 0, number.length(), count + 1));
+                    count++;
+                }
+                continue;
+            }
+            c = reader.read();
+        }
+        return count;
+    }
+
+    private static void readString(Reader reader, StringBuilder out) throws IOException {
+        out.setLength(0);
+        while (true) {
+            int c = reader.read();
+            if (c == -1) {
+                throw new IOException("Unterminated string");
+            }
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                // Escapes never occur in keys this parser looks for; keep the escaped char as is
+                c = reader.read();
+                if (c == -1) {
+                    throw new IOException("Unterminated string");
+                }
+            }
+            out.append((char) c);
+        }
+    }
+
+    private static int skipWhitespace(Reader reader, int c) throws IOException {
+        while (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\uFEFF') {
+            c = reader.read();
+        }
+        return c;
+    }
+
+    private static boolean isNumber(CharSequence text, int start, int end) {
+        if (start < end && text.charAt(start) == '-') {
+            start++;
+        }
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char ch = text.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a decimal number in place, without creating a String per row.
+     */
+    private static long parseLong(CharSequence text, int start, int end, long row) throws IOException {
+        if (!isNumber(text, start, end)) {
+            throw new IOException("Invalid timestamp \"" + text.subSequence(start, end) + "\" in row " + row);
+        }
+        boolean negative = text.charAt(start) == '-';
+        long value = 0;
+        try {
+            for (int i = negative ? start + 1 : start; i < end; i++) {
+                value = Math.addExact(Math.multiplyExact(value, 10), text.charAt(i) - '0');
+            }
+        } catch (ArithmeticException e) {
+            throw new IOException("Timestamp out of range in row " + row);
+        }
+        return negative ? -value : value;
+    }
+}
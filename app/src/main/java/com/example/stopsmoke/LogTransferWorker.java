@@ -0,0 +1,424 @@
+package com.example.stopsmoke;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Exports the log history to, or imports it from, a user-chosen document in the background,
+ * either as CSV/JSON or as a compact {@link LogBackup}.
+ * Export and backup read the table in keyset chunks into one reused buffer, import inserts
+ * parsed rows in batched transactions and restore memory-maps the backup, so memory use
+ * stays flat however long the history is.
+ * Progress is published as a percentage in {@link #KEY_PROGRESS}; the finished work reports
+ * the number of rows in {@link #KEY_ROWS}, and failed work the reason in {@link #KEY_ERROR}.
+ */
+public class LogTransferWorker extends Worker {
+
+    // Transfers run one at a time; starting another queues it behind the running one
+    private static final String UNIQUE_WORK_NAME = "logTransfer";
+
+    // Input keys
+    private static final String KEY_URI = "uri";
+    private static final String KEY_MODE = "mode";
+    private static final String KEY_FORMAT = "format";
+
+    // Transfer modes
+    private static final int MODE_EXPORT = 0;
+    private static final int MODE_IMPORT = 1;
+    private static final int MODE_BACKUP = 2;
+    private static final int MODE_RESTORE = 3;
+
+    // Progress and output keys
+    public static final String KEY_PROGRESS = "progress";
+    public static final String KEY_ROWS = "rows";
+    public static final String KEY_ERROR = "error";
+
+    // Rows per export chunk and per import transaction
+    private static final int CHUNK_SIZE = 1000;
+
+    // Imported timestamps may lie at most this far in the future, to allow for clock skew
+    private static final long ONE_DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private int lastProgress = -1;
+
+    public LogTransferWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Starts exporting every log to a document.
+     *
+     * @param context Any context.
+     * @param uri     Writable document to export to.
+     * @param format  The file format.
+     * @return The id of the work request, for observing progress.
+     */
+    public static UUID enqueueExport(Context context, Uri uri, LogTransfer.Format format) {
+        return enqueue(context, new Data.Builder()
+                .putString(KEY_URI, uri.toString())
+                .putInt(KEY_MODE, MODE_EXPORT)
+                .putString(KEY_FORMAT, format.name())
+                .build());
+    }
+
+    /**
+     * Starts importing logs from a document. The format is detected from its content and
+     * the rows are added to the existing history.
+     *
+     * @param context Any context.
+     * @param uri     Readable document to import from.
+     * @return The id of the work request, for observing progress.
+     */
+    public static UUID enqueueImport(Context context, Uri uri) {
+        return enqueue(context, new Data.Builder()
+                .putString(KEY_URI, uri.toString())
+                .putInt(KEY_MODE, MODE_IMPORT)
+                .build());
+    }
+
+    /**
+     * Starts writing a binary backup of every log to a document.
+     *
+     * @param context Any context.
+     * @param uri     Writable document to back up to.
+     * @return The id of the work request, for observing progress.
+     */
+    public static UUID enqueueBackup(Context context, Uri uri) {
+        return enqueue(context, new Data.Builder()
+                .putString(KEY_URI, uri.toString())
+                .putInt(KEY_MODE, MODE_BACKUP)
+                .build());
+    }
+
+    /**
+     * Starts replacing the whole history with a binary backup. A damaged backup is rejected
+     * and leaves the history unchanged.
+     *
+     * @param context Any context.
+     * @param uri     Readable backup document.
+     * @return The id of the work request, for observing progress.
+     */
+    public static UUID enqueueRestore(Context context, Uri uri) {
+        return enqueue(context, new Data.Builder()
+                .putString(KEY_URI, uri.toString())
+                .putInt(KEY_MODE, MODE_RESTORE)
+                .build());
+    }
+
+    private static UUID enqueue(Context context, Data input) {
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(LogTransferWorker.class)
+                .setInputData(input)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, workRequest);
+        return workRequest.getId();
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Uri uri = Uri.parse(getInputData().getString(KEY_URI));
+        DatabaseHelper db = DatabaseHelper.getInstance(getApplicationContext());
+        LogRepository repository = LogRepository.getInstance(getApplicationContext());
+        try {
+            long rows;
+            switch (getInputData().getInt(KEY_MODE, MODE_EXPORT)) {
+                case MODE_IMPORT:
+                    rows = importLogs(repository, uri);
+                    break;
+                case MODE_BACKUP:
+                    rows = backupLogs(db, uri);
+                    break;
+                case MODE_RESTORE:
+                    rows = restoreLogs(repository, uri);
+                    break;
+                default:
+                    rows = exportLogs(db, uri, LogTransfer.Format.valueOf(getInputData().getString(KEY_FORMAT)));
+                    break;
+            }
+            return Result.success(new Data.Builder().putLong(KEY_ROWS, rows).build());
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            return Result.failure(new Data.Builder().putString(KEY_ERROR, message).build());
+        }
+    }
+
+    /**
+     * Streams the whole table to the document, oldest first.
+     */
+    private long exportLogs(DatabaseHelper db, Uri uri, LogTransfer.Format format) throws IOException {
+        long total = db.countLogs();
+        long written = 0;
+        OutputStream output = getApplicationContext().getContentResolver().openOutputStream(uri, "wt");
+        if (output == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            LogTransfer.Encoder encoder = new LogTransfer.Encoder(writer, format);
+            encoder.begin();
+
+            // One short cursor per chunk; the buffer is reused, so memory does not grow with the table
+            LogColumns chunk = new LogColumns(CHUNK_SIZE);
+            long afterTimestamp = Long.MIN_VALUE;
+            int afterId = Integer.MIN_VALUE;
+            int read;
+            do {
+                read = db.readLogChunkAfter(afterTimestamp, afterId, CHUNK_SIZE, chunk);
+                for (int i = 0; i < read; i++) {
+                    encoder.write(chunk.getId(i), chunk.getTimestamp(i));
+                }
+                if (read > 0) {
+                    afterTimestamp = chunk.getTimestamp(read - 1);
+                    afterId = chunk.getId(read - 1);
+                }
+                written += read;
+                publishProgress(written, total, written);
+            } while (read == CHUNK_SIZE && !isStopped());
+
+            // Ending the document would make a cut-off export look complete
+            if (isStopped()) {
+                throw new IOException("Export cancelled");
+            }
+            encoder.end();
+        }
+        return written;
+    }
+
+    /**
+     * Parses the document incrementally and inserts its rows in batched transactions.
+     * A first pass validates every row, so a malformed file, or one in the wrong unit, is
+     * rejected before anything is written. Every write runs as a job on the repository's
+     * writer thread, so a cigarette logged meanwhile is never lost from the summary.
+     */
+    private long importLogs(LogRepository repository, Uri uri) throws IOException {
+        ContentResolver resolver = getApplicationContext().getContentResolver();
+        long size = documentSize(resolver, uri);
+        long maxTimestamp = System.currentTimeMillis() + ONE_DAY_MILLIS;
+
+        try (Reader reader = openReader(resolver, uri, null)) {
+            LogTransfer.parse(reader, LogTransfer.MIN_TIMESTAMP, maxTimestamp, timestamp -> {
+                if (isStopped()) {
+                    throw new IOException("Import cancelled");
+                }
+            });
+        }
+
+        final CountingInputStream[] counted = new CountingInputStream[1];
+        final List<CigaretteLog> batch = new ArrayList<>(CHUNK_SIZE);
+        final long[] imported = new long[1];
+        try (Reader reader = openReader(resolver, uri, counted)) {
+            LogTransfer.parse(reader, LogTransfer.MIN_TIMESTAMP, maxTimestamp, timestamp -> {
+                if (isStopped()) {
+                    throw new IOException("Import cancelled");
+                }
+                batch.add(new CigaretteLog(timestamp));
+                if (batch.size() == CHUNK_SIZE) {
+                    imported[0] += repository.writeAndWait(db -> db.insertLogs(batch));
+                    batch.clear();
+                    publishProgress(counted[0].count, size, imported[0]);
+                }
+            });
+            imported[0] += repository.writeAndWait(db -> db.insertLogs(batch));
+        } finally {
+            // Whatever was committed is part of the history now, so the summary must reflect it.
+            // A failure here must not hide the one that ended the import.
+            try {
+                repository.writeAndWait(db -> {
+                    int smokedToday = db.countCigarettesOn(new Date());
+                    SummaryCache.update(summary -> summary.withSmokedToday(smokedToday));
+                    return smokedToday;
+                });
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        publishProgress(size, size, imported[0]);
+        return imported[0];
+    }
+
+    /**
+     * Opens the document as UTF-8 text.
+     *
+     * @param counted If not null, receives the stream counting the bytes read.
+     */
+    private static Reader openReader(ContentResolver resolver, Uri uri, CountingInputStream[] counted)
+            throws IOException {
+        InputStream input = resolver.openInputStream(uri);
+        if (input == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+        CountingInputStream stream = new CountingInputStream(input);
+        if (counted != null) {
+            counted[0] = stream;
+        }
+        return new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes every timestamp, oldest first, into a binary backup. Reads run on this thread,
+     * in short chunks; thanks to WAL they never hold up the writer.
+     */
+    private long backupLogs(DatabaseHelper db, Uri uri) throws IOException {
+        long total = db.countLogs();
+        long written = 0;
+        OutputStream output = getApplicationContext().getContentResolver().openOutputStream(uri, "wt");
+        if (output == null) {
+            throw new IOException("Cannot open " + uri);
+        }
+
+        try (OutputStream out = new BufferedOutputStream(output)) {
+            LogBackup.Writer writer = new LogBackup.Writer(out);
+            LogColumns chunk = new LogColumns(CHUNK_SIZE);
+            long afterTimestamp = Long.MIN_VALUE;
+            int afterId = Integer.MIN_VALUE;
+            int read;
+            do {
+                read = db.readLogChunkAfter(afterTimestamp, afterId, CHUNK_SIZE, chunk);
+                for (int i = 0; i < read; i++) {
+                    writer.add(chunk.getTimestamp(i));
+                }
+                if (read > 0) {
+                    afterTimestamp = chunk.getTimestamp(read - 1);
+                    afterId = chunk.getId(read - 1);
+                }
+                written += read;
+                publishProgress(written, total, written);
+            } while (read == CHUNK_SIZE && !isStopped());
+
+            // The trailer would make a cut-off backup restore without error
+            if (isStopped()) {
+                throw new IOException("Backup cancelled");
+            }
+            writer.finish();
+        }
+        return written;
+    }
+
+    /**
+     * Memory-maps a backup, validates it and swaps it in for the whole history. The swap,
+     * the timer reset and the summary update run as one job on the repository's writer
+     * thread, like clearing the history, so no log can slip in between.
+     */
+    private long restoreLogs(LogRepository repository, Uri uri) throws IOException {
+        long restored;
+        try (ParcelFileDescriptor descriptor = getApplicationContext().getContentResolver().openFileDescriptor(uri, "r")) {
+            if (descriptor == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            try (FileInputStream input = new FileInputStream(descriptor.getFileDescriptor())) {
+                // Checksums are verified on the mapping before the history is touched
+                FileChannel channel = input.getChannel();
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                LogBackup.Reader backup = LogBackup.Reader.open(mapped);
+                Context appContext = getApplicationContext();
+                restored = repository.writeAndWait(db -> {
+                    long rows;
+                    try {
+                        rows = db.replaceAllLogs(backup);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+
+                    // The timer belonged to the old history; today's count comes from the new one
+                    CigaretteLogger.stopTimer(appContext);
+                    int smokedToday = db.countCigarettesOn(new Date());
+                    SummaryCache.update(summary -> summary.withSmokedToday(smokedToday));
+                    return rows;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        publishProgress(1, 1, restored);
+        return restored;
+    }
+
+    /**
+     * Publishes progress when the whole percentage changes.
+     */
+    private void publishProgress(long done, long total, long rows) {
+        int progress = total > 0 ? (int) Math.min(done * 100 / total, 100) : 0;
+        if (progress == lastProgress) {
+            return;
+        }
+        lastProgress = progress;
+        setProgressAsync(new Data.Builder()
+                .putInt(KEY_PROGRESS, progress)
+                .putLong(KEY_ROWS, rows)
+                .build());
+    }
+
+    /**
+     * Returns the document size in bytes, or -1 if the provider does not know it.
+     */
+    private static long documentSize(ContentResolver resolver, Uri uri) {
+        try (AssetFileDescriptor descriptor = resolver.openAssetFileDescriptor(uri, "r")) {
+            return descriptor != null ? descriptor.getLength() : -1;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Counts the bytes read so far, which drives import progress.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
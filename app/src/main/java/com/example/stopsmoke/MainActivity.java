@@ -1,60 +1,37 @@
 package com.example.stopsmoke;
 
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.core.app.ActivityCompat;
-import androidx.core.app.NotificationCompat;
-import androidx.core.app.NotificationManagerCompat;
 
 import android.annotation.SuppressLint;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.content.SharedPreferences;
-import android.content.pm.PackageManager;
-import android.os.Build;
 import android.os.Bundle;
-import android.os.CountDownTimer;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import java.util.Locale;
-import java.util.Date;
-
 public class MainActivity extends AppCompatActivity {
 
-    // SharedPreferences keys
-    private static final String PREFS_NAME = "StopSmokePrefs";
-    private static final String KEY_LAST_CIG_TIME = "lastCigaretteTime";
-    private static final String KEY_NEXT_CIG_TIME = "nextCigaretteTime";
-    private static final String KEY_ALLOWED_CIGS = "allowedCigarettes";
-
-    // Default values
-    private static final int DEFAULT_ALLOWED_CIGS = 20;
-    private static final int SECONDS_IN_DAY = 960; // 24 - 8(sleep) = 16 hours
-
-    // Notification channel ID
-    private static final String CHANNEL_ID = "timer_channel";
-
     // UI Components
     private TextView textViewAllowed;
     private TextView textViewSmoked;
     private TextView textViewNextCigTimer;
     private Button buttonLogCigarette;
 
-    // SharedPreferences and DatabaseHelper
-    private SharedPreferences prefs;
-    private DatabaseHelper db;
+    // LogRepository
+    private LogRepository repository;
 
     // Timer variables
-    private CountDownTimer countDownTimer;
+    private CountdownTicker countdown;
     private long nextCigaretteTimeMillis;
     private int smokedToday = 0;
 
+    // Refreshes the counters whenever the shared summary changes
+    private final SummaryCache.Listener summaryListener = summary -> updateUI();
+
     // BroadcastReceiver to handle cache and history clearance
     private final BroadcastReceiver clearCacheHistoryReceiver = new BroadcastReceiver() {
         @Override
@@ -80,14 +57,14 @@ public class MainActivity extends AppCompatActivity {
         Button buttonSettings = findViewById(R.id.buttonSettings);
         Button buttonViewProgress = findViewById(R.id.buttonViewProgress);
 
-        // Initialize SharedPreferences
-        prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        // Initialize LogRepository
+        repository = LogRepository.getInstance(this);
 
-        // Initialize DatabaseHelper
-        db = new DatabaseHelper(this);
+        // Countdown to the next allowed cigarette; only ticks while this screen is visible
+        countdown = new CountdownTicker(this, textViewNextCigTimer, "Next cigarette available in: ", this::onCountdownFinished);
 
-        // Update UI
-        updateUI();
+        // Keep the counters in sync with the shared summary
+        SummaryCache.addListener(summaryListener);
 
         // Set click listeners
         buttonLogCigarette.setOnClickListener(v -> logCigarette());
@@ -105,48 +82,41 @@ public class MainActivity extends AppCompatActivity {
         // Register BroadcastReceiver for cache and history clearance
         IntentFilter filter = new IntentFilter("com.example.stopsmoke.ACTION_CLEAR_CACHE_HISTORY");
         registerReceiver(clearCacheHistoryReceiver, filter);
-
-        // Check if a timer is already running
-        checkExistingTimer();
-
-        // Create Notification Channel
-        createNotificationChannel();
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        updateUI();
-        checkExistingTimer();
-    }
 
-    @Override
-    protected void onPause() {
-        super.onPause();
-        if (countDownTimer != null) {
-            countDownTimer.cancel();
+        // Use the cached summary when available; otherwise load it off the main thread first
+        if (SummaryCache.get() != null) {
+            updateUI();
+            checkExistingTimer();
+        } else {
+            repository.loadSummary(this, summary -> {
+                updateUI();
+                checkExistingTimer();
+            });
         }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (countDownTimer != null) {
-            countDownTimer.cancel();
-        }
         unregisterReceiver(clearCacheHistoryReceiver);
+        SummaryCache.removeListener(summaryListener);
     }
 
     /**
      * Checks if there's an existing timer and starts it if necessary.
      */
     private void checkExistingTimer() {
-        nextCigaretteTimeMillis = prefs.getLong(KEY_NEXT_CIG_TIME, 0);
+        SummarySnapshot summary = SummaryCache.get();
+        nextCigaretteTimeMillis = summary != null ? summary.getNextCigaretteTime() : 0;
         long currentTimeMillis = System.currentTimeMillis();
 
         if (nextCigaretteTimeMillis > currentTimeMillis) {
-            long millisUntilNextCig = nextCigaretteTimeMillis - currentTimeMillis;
-            startTimer(millisUntilNextCig);
+            startTimer(nextCigaretteTimeMillis);
         } else {
             // Timer has expired or not set
             textViewNextCigTimer.setVisibility(View.GONE);
@@ -157,170 +127,90 @@ public class MainActivity extends AppCompatActivity {
     /**
      * Logs a cigarette and starts the timer based on allowed cigarettes per day.
      */
-    @SuppressLint("SetTextI18n")
     private void logCigarette() {
-        long currentTimeMillis = System.currentTimeMillis();
+        // Prevent double taps while the insert is in flight
+        buttonLogCigarette.setEnabled(false);
 
-        // Insert log into database
-        CigaretteLog log = new CigaretteLog(currentTimeMillis);
-        long result = db.insertLog(log);
+        // Insert the log and schedule the next allowed time on the writer thread
+        CigaretteLogger.log(this, this, this::onCigaretteLogged);
+    }
 
-        if (result != -1) {
+    /**
+     * Updates the UI and starts the timer once a log has been written.
+     *
+     * @param nextTime Time the next cigarette is allowed, or -1 on failure.
+     */
+    private void onCigaretteLogged(long nextTime) {
+        if (nextTime != -1) {
             // Successfully logged
             Toast.makeText(this, "Cigarette logged.", Toast.LENGTH_SHORT).show();
 
-            // Update smoked count
-            smokedToday = db.countCigarettesOn(new Date());
-            textViewSmoked.setText("Smoked Today: " + smokedToday);
-
-            // Update SharedPreferences
-            SharedPreferences.Editor editor = prefs.edit();
-            editor.putLong(KEY_LAST_CIG_TIME, currentTimeMillis);
-
-            // Calculate next allowed time based on allowed cigs per day
-            int allowedCigsPerDay = prefs.getInt(KEY_ALLOWED_CIGS, DEFAULT_ALLOWED_CIGS);
-            long intervalMillis = calculateIntervalMillis(allowedCigsPerDay);
-
-            nextCigaretteTimeMillis = currentTimeMillis + intervalMillis;
-            editor.putLong(KEY_NEXT_CIG_TIME, nextCigaretteTimeMillis);
-            editor.apply();
-
             // Start the timer
-            startTimer(intervalMillis);
+            nextCigaretteTimeMillis = nextTime;
+            startTimer(nextCigaretteTimeMillis);
         } else {
             // Failed to log
+            buttonLogCigarette.setEnabled(true);
             Toast.makeText(this, "Failed to log cigarette.", Toast.LENGTH_SHORT).show();
         }
     }
 
-    /**
-     * Calculates the interval between cigarettes based on allowed cigs per day.
-     *
-     * @param allowedCigsPerDay Number of allowed cigarettes per day.
-     * @return Interval in milliseconds.
-     */
-    private long calculateIntervalMillis(int allowedCigsPerDay) {
-        if (allowedCigsPerDay <= 0) {
-            allowedCigsPerDay = DEFAULT_ALLOWED_CIGS; // Prevent division by zero
-        }
-        int intervalMinutes = SECONDS_IN_DAY / allowedCigsPerDay;
-        return intervalMinutes * 60 * 1000L; // Convert to milliseconds
-    }
-
     /**
      * Starts the countdown timer.
      *
-     * @param millisInFuture Duration in milliseconds for the timer.
+     * @param targetTimeMillis Time the next cigarette is allowed, in milliseconds since epoch.
      */
-    private void startTimer(long millisInFuture) {
+    private void startTimer(long targetTimeMillis) {
         // Make the timer TextView visible
         textViewNextCigTimer.setVisibility(View.VISIBLE);
 
         // Disable the log cigarette button
         buttonLogCigarette.setEnabled(false);
 
-        // Initialize and start the CountDownTimer
-        countDownTimer = new CountDownTimer(millisInFuture, 1000) { // Tick every second
-
-            @SuppressLint("SetTextI18n")
-            @Override
-            public void onTick(long millisUntilFinished) {
-                textViewNextCigTimer.setText("Next cigarette available in: " + formatMillis(millisUntilFinished));
-            }
-
-            @SuppressLint("SetTextI18n")
-            @Override
-            public void onFinish() {
-                textViewNextCigTimer.setText("You can smoke now!");
-                buttonLogCigarette.setEnabled(true);
-                // Optionally hide the timer after a short delay
-                textViewNextCigTimer.postDelayed(() -> textViewNextCigTimer.setVisibility(View.GONE), 5000);
-
-                // Send a notification
-                sendTimerCompletedNotification();
-            }
-        }.start();
+        // Restarting replaces any countdown already in progress
+        countdown.start(targetTimeMillis);
     }
 
     /**
-     * Stops the running timer, hides the timer TextView, and enables the log button.
+     * Called when the countdown reaches the next allowed time while the screen is visible.
+     * The notification itself comes from {@link TimerWorker}, so only the screen is updated.
      */
-    private void stopTimer() {
-        if (countDownTimer != null) {
-            countDownTimer.cancel();
-            countDownTimer = null;
-        }
-        textViewNextCigTimer.setVisibility(View.GONE);
+    @SuppressLint("SetTextI18n")
+    private void onCountdownFinished() {
+        textViewNextCigTimer.setText("You can smoke now!");
         buttonLogCigarette.setEnabled(true);
+        updateUI();
+        // Optionally hide the timer after a short delay
+        textViewNextCigTimer.postDelayed(() -> textViewNextCigTimer.setVisibility(View.GONE), 5000);
     }
 
     /**
-     * Formats milliseconds into HH:mm format.
-     *
-     * @param millis Milliseconds to format.
-     * @return Formatted time string.
+     * Stops the running timer, hides the timer TextView, and enables the log button.
      */
-    private String formatMillis(long millis) {
-        long minutes = (millis / 1000) / 60;
-        long seconds = (millis / 1000) % 60;
-
-        return String.format(Locale.getDefault(), "%02d:%02d", minutes, seconds);
+    private void stopTimer() {
+        countdown.cancel();
+        textViewNextCigTimer.setVisibility(View.GONE);
+        buttonLogCigarette.setEnabled(true);
     }
 
     /**
-     * Sends a notification when the timer completes.
+     * Updates the UI elements based on current data.
      */
-    private void sendTimerCompletedNotification() {
-        // Build the notification
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setSmallIcon(R.drawable.ic_notification) // Ensure this icon exists
-                .setContentTitle("StopSmoke")
-                .setContentText("You can smoke your next cigarette now.")
-                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
-                .setAutoCancel(true);
-
-        // Show the notification
-        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
-        if (ActivityCompat.checkSelfPermission(this, android.Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
-            // TODO: Consider calling
-            //    ActivityCompat#requestPermissions
-            // here to request the missing permissions, and then overriding
-            //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-            //                                          int[] grantResults)
-            // to handle the case where the user grants the permission. See the documentation
-            // for ActivityCompat#requestPermissions for more details.
+    @SuppressLint("SetTextI18n")
+    private void updateUI() {
+        // Read from the in-memory summary; it is published once loaded
+        SummarySnapshot summary = SummaryCache.get();
+        if (summary == null) {
             return;
         }
-        notificationManager.notify(1001, builder.build());
-    }
 
-    /**
-     * Updates the UI elements based on current data.
-     */
-    private void updateUI() {
-        // Retrieve allowed cigarettes from SharedPreferences
-        int allowedCigarettes = prefs.getInt(KEY_ALLOWED_CIGS, DEFAULT_ALLOWED_CIGS);
-        textViewAllowed.setText("Allowed Today: " + allowedCigarettes);
+        // Today's allowance comes from the reduction plan, not the initial setting
+        int allowedToday = summary.getAllowedToday();
+        int slotsLeft = SlotPlanner.getInstance().slotsRemaining(System.currentTimeMillis(), summary.getSmokedToday(),
+                allowedToday, summary.getWakeMinute(), summary.getSleepMinute());
+        textViewAllowed.setText("Allowed Today: " + allowedToday + " (" + slotsLeft + " slots left)");
 
-        // Retrieve smoked today count
-        smokedToday = db.countCigarettesOn(new Date());
+        smokedToday = summary.getSmokedToday();
         textViewSmoked.setText("Smoked Today: " + smokedToday);
     }
-
-    /**
-     * Creates a notification channel for Android O and above.
-     */
-    private void createNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            CharSequence name = "Timer Notifications";
-            String description = "Notifications for when you can smoke your next cigarette.";
-            int importance = NotificationManager.IMPORTANCE_DEFAULT;
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, name, importance);
-            channel.setDescription(description);
-
-            // Register the channel with the system
-            NotificationManager manager = getSystemService(NotificationManager.class);
-            manager.createNotificationChannel(channel);
-        }
-    }
 }
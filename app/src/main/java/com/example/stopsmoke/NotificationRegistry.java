@@ -0,0 +1,126 @@
+package com.example.stopsmoke;
+
+import android.annotation.SuppressLint;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import java.util.Arrays;
+
+/**
+ * Owns every notification the app posts: the channels, the notification IDs and the
+ * notification content. Channels are registered once when the process starts
+ * (see {@link StopSmokeApplication}), and each notification is built the first time it is
+ * needed and reused afterwards, so a waking worker only has to post it.
+ */
+public class NotificationRegistry {
+
+    // Channels
+    static final String CHANNEL_TIMER = "timer_channel";
+    static final String CHANNEL_REMINDERS = "StopSmokeChannel";
+
+    // Notification IDs; each kind replaces its previous instance instead of stacking
+    static final int ID_DAILY_REMINDER = 1;
+    static final int ID_TIMER_COMPLETED = 1001;
+
+    private static NotificationRegistry instance;
+
+    private final Context context;
+    private final NotificationManagerCompat notificationManager;
+    private Notification timerCompleted;
+    private Notification dailyReminder;
+    private int dailyReminderAllowance = -1;
+
+    /**
+     * Returns the app-scoped registry.
+     *
+     * @param context Any context; the application context is retained.
+     * @return The shared NotificationRegistry instance.
+     */
+    public static synchronized NotificationRegistry getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationRegistry(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private NotificationRegistry(Context context) {
+        this.context = context;
+        this.notificationManager = NotificationManagerCompat.from(context);
+    }
+
+    /**
+     * Registers all channels with the system in one call. Re-registering an existing
+     * channel is a no-op, but there is no reason to do it more than once per process.
+     */
+    void registerChannels() {
+        NotificationChannel timer = new NotificationChannel(CHANNEL_TIMER,
+                "Timer Notifications",
+                NotificationManager.IMPORTANCE_DEFAULT);
+        timer.setDescription("Notifications for when you can smoke your next cigarette.");
+
+        NotificationChannel reminders = new NotificationChannel(CHANNEL_REMINDERS,
+                "StopSmoke Notifications",
+                NotificationManager.IMPORTANCE_HIGH);
+        reminders.setDescription("Notifications to help you stop smoking");
+
+        context.getSystemService(NotificationManager.class)
+                .createNotificationChannels(Arrays.asList(timer, reminders));
+    }
+
+    /**
+     * Tells the user the next cigarette is allowed now.
+     */
+    public void notifyTimerCompleted() {
+        if (timerCompleted == null) {
+            timerCompleted = new NotificationCompat.Builder(context, CHANNEL_TIMER)
+                    .setSmallIcon(R.drawable.ic_notification)
+                    .setContentTitle("StopSmoke")
+                    .setContentText("You can smoke your next cigarette now.")
+                    .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+                    .setAutoCancel(true)
+                    .build();
+        }
+        post(ID_TIMER_COMPLETED, timerCompleted);
+    }
+
+    /**
+     * Reminds the user to keep logging their cigarettes and of today's allowance. The
+     * notification is rebuilt only when the allowance differs from the last one posted.
+     *
+     * @param allowedToday Cigarettes the reduction plan allows today.
+     */
+    public void notifyDailyReminder(int allowedToday) {
+        if (dailyReminder == null || dailyReminderAllowance != allowedToday) {
+            dailyReminderAllowance = allowedToday;
+            dailyReminder = new NotificationCompat.Builder(context, CHANNEL_REMINDERS)
+                    .setSmallIcon(R.drawable.ic_notification)
+                    .setContentTitle("StopSmoke Reminder")
+                    .setContentText("You can smoke " + allowedToday + " today. Remember to log your cigarettes!")
+                    .setPriority(NotificationCompat.PRIORITY_HIGH)
+                    .setAutoCancel(true)
+                    .build();
+        }
+        post(ID_DAILY_REMINDER, dailyReminder);
+    }
+
+    /**
+     * Removes the timer notification, e.g. once a new cigarette has been logged.
+     */
+    public void cancelTimerCompleted() {
+        notificationManager.cancel(ID_TIMER_COMPLETED);
+    }
+
+    @SuppressLint("MissingPermission")
+    private void post(int id, Notification notification) {
+        // Covers both a denied POST_NOTIFICATIONS permission and notifications turned off in settings
+        if (!notificationManager.areNotificationsEnabled()) {
+            return;
+        }
+        notificationManager.notify(id, notification);
+    }
+}
@@ -1,57 +1,24 @@
 package com.example.stopsmoke;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
 import android.content.Context;
-import android.os.Build;
 
-import androidx.core.app.NotificationCompat;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
 public class NotificationWorker extends Worker {
 
-    private static final String CHANNEL_ID = "StopSmokeChannel";
-    private static final int NOTIFICATION_ID = 1;
-
     public NotificationWorker(Context context, WorkerParameters params) {
         super(context, params);
     }
 
     @Override
     public Result doWork() {
-        // Create notification channel if necessary
-        createNotificationChannel();
-
-        // Build the notification
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(getApplicationContext(), CHANNEL_ID)
-                .setSmallIcon(R.drawable.ic_notification) // Ensure you have this icon in your drawable
-                .setContentTitle("StopSmoke Reminder")
-                .setContentText("Remember to log your cigarettes today!")
-                .setPriority(NotificationCompat.PRIORITY_HIGH)
-                .setAutoCancel(true);
-
-        // Show the notification
-        NotificationManager notificationManager =
-                (NotificationManager) getApplicationContext().getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.notify(NOTIFICATION_ID, builder.build());
+        // Today's allowance comes from the reduction plan; the summary may need loading in a cold process
+        Context context = getApplicationContext();
+        SummarySnapshot summary = SummaryCache.ensureLoaded(context, DatabaseHelper.getInstance(context));
 
+        // Channels are registered at process start; the registry only posts the cached notification
+        NotificationRegistry.getInstance(context).notifyDailyReminder(summary.getAllowedToday());
         return Result.success();
     }
-
-    private void createNotificationChannel() {
-        // Create the NotificationChannel, required for API 26+
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            CharSequence name = "StopSmoke Notifications";
-            String description = "Notifications to help you stop smoking";
-            int importance = NotificationManager.IMPORTANCE_HIGH;
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, name, importance);
-            channel.setDescription(description);
-
-            // Register the channel with the system
-            NotificationManager notificationManager =
-                    getApplicationContext().getSystemService(NotificationManager.class);
-            notificationManager.createNotificationChannel(channel);
-        }
-    }
 }
@@ -5,22 +5,30 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.annotation.SuppressLint;
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import java.util.Calendar;
-import java.util.List;
+import java.util.Locale;
 
 public class ProgressActivity extends AppCompatActivity {
 
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+
     private ProgressBar progressBar;
     private TextView textViewProgressDescription;
-    private DatabaseHelper db;
+    private TextView textViewHistory;
+    private LogRepository repository;
     private CigaretteLogAdapter adapter;
+    private LogPager pager;
 
-    private static final String PREFS_NAME = "StopSmokePrefs";
+    // Re-reads the loaded rows and statistics whenever logs or settings change
+    private final SummaryCache.Listener summaryListener = summary -> {
+        pager.refresh();
+        updateProgress(summary);
+        updateHistory();
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -31,61 +39,111 @@ public class ProgressActivity extends AppCompatActivity {
         RecyclerView recyclerView = findViewById(R.id.recyclerViewLogs);
         progressBar = findViewById(R.id.progressBar);
         textViewProgressDescription = findViewById(R.id.textViewProgressDescription);
+        textViewHistory = findViewById(R.id.textViewHistory);
 
-        // Initialize DatabaseHelper
-        db = new DatabaseHelper(this);
+        // Initialize LogRepository
+        repository = LogRepository.getInstance(this);
 
         // Setup RecyclerView
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         adapter = new CigaretteLogAdapter();
         recyclerView.setAdapter(adapter);
 
+        // Page through the full history as the list is scrolled
+        pager = new LogPager(repository, new LogPager.Listener() {
+            @Override
+            public void onPageLoaded(LogColumns page) {
+                adapter.appendLogs(page);
+            }
+
+            @Override
+            public void onWindowRefreshed(LogColumns window) {
+                adapter.submitLogs(window);
+            }
+        });
+        recyclerView.addOnScrollListener(pager.scrollListener());
+        SummaryCache.addListener(summaryListener);
+
         // Load data
         loadLogs();
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        SummaryCache.removeListener(summaryListener);
+        pager.close();
+    }
+
     /**
-     * Loads cigarette logs from the past 4 weeks and updates the UI.
+     * Loads the first page of cigarette logs and updates the UI.
      */
     private void loadLogs() {
-        Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.WEEK_OF_YEAR, -4); // Past 4 weeks
-        long startTimestamp = calendar.getTimeInMillis();
-        long endTimestamp = System.currentTimeMillis();
-
-        List<CigaretteLog> logs = db.getLogsBetween(startTimestamp, endTimestamp);
-        adapter.setLogs(logs);
+        pager.loadNextPage();
 
-        // Update ProgressBar and Description
-        updateProgress();
+        // Update ProgressBar and Description once the shared summary is available
+        repository.loadSummary(this, this::updateProgress);
+        updateHistory();
     }
 
     /**
      * Updates the ProgressBar and its descriptive TextView based on user settings and logs.
+     *
+     * @param summary The shared summary holding the user's plan settings.
      */
     @SuppressLint("SetTextI18n")
-    private void updateProgress() {
-        // Retrieve user settings from SharedPreferences
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        int initialCigs = prefs.getInt("allowedCigarettes", 20);
-        int reductionRate = prefs.getInt("reductionRate", 1);
-
-        // Calculate total allowed cigarettes over 4 weeks with reduction
-        int totalAllowed = 0;
-        for (int i = 0; i < 4; i++) {
-            totalAllowed += Math.max(initialCigs - (reductionRate * i), 0);
-        }
-
-        // Calculate total smoked cigarettes in the past 4 weeks
-        List<CigaretteLog> logs = db.getLogsBetween(getStartOfWeek(), System.currentTimeMillis());
-        int totalSmoked = logs.size();
+    private void updateProgress(SummarySnapshot summary) {
+        // The reduction plan gives the allowed total over the same days in closed form
+        final long startDay = LocalDays.epochDay(getStartOfWeek());
+        final long today = LocalDays.epochDay(System.currentTimeMillis());
+        final int allowed = (int) summary.getAllowedBetween(startDay, today);
+
+        // Aggregate the past 4 weeks in SQLite on a reader thread
+        repository.read(db -> db.getProgressStats(startDay, today), this, stats -> {
+            int totalSmoked = stats.getTotal();
+
+            // Update ProgressBar
+            progressBar.setMax(allowed);
+            progressBar.setProgress(totalSmoked);
+
+            // Update Description
+            textViewProgressDescription.setText("Smoked " + totalSmoked + " out of " + allowed + " cigarettes in the last 4 weeks.");
+        });
+    }
 
-        // Update ProgressBar
-        progressBar.setMax(totalAllowed);
-        progressBar.setProgress(totalSmoked);
+    /**
+     * Shows this week's, month's and year's totals, the rolling daily averages and the
+     * busiest hour of the week, all read from incrementally maintained rollups.
+     */
+    private void updateHistory() {
+        repository.read(ProgressActivity::describeHistory, this, textViewHistory::setText);
+    }
 
-        // Update Description
-        textViewProgressDescription.setText("Smoked " + totalSmoked + " out of " + totalAllowed + " cigarettes in the last 4 weeks.");
+    /**
+     * Builds the history summary text. Runs on a reader thread.
+     *
+     * @param db The database to read the rollups from.
+     * @return The text to show.
+     */
+    private static String describeHistory(DatabaseHelper db) {
+        HistoryAnalytics analytics = db.getHistoryAnalytics();
+        DailyCountIndex index = db.getDailyCountIndex();
+
+        long today = LocalDays.epochDay(System.currentTimeMillis());
+        long month = LocalDays.epochMonth(today);
+        StringBuilder text = new StringBuilder()
+                .append("This week: ").append(analytics.getWeeks().countFor(LocalDays.epochWeek(today)))
+                .append("  This month: ").append(analytics.getMonths().countFor(month))
+                .append("  This year: ").append(analytics.getYears().countFor(Math.floorDiv(month, 12L)))
+                .append(String.format(Locale.US, "\nDaily average: %.1f (7 days), %.1f (30 days)",
+                        index.rollingAverage(today, 7), index.rollingAverage(today, 30)));
+
+        int peak = analytics.getPeakHourOfWeek();
+        if (peak >= 0) {
+            text.append("\nBusiest time: ").append(DAY_NAMES[peak / 24])
+                    .append(String.format(Locale.US, " %02d:00", peak % 24));
+        }
+        return text.toString();
     }
 
     /**
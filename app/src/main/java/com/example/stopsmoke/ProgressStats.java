@@ -0,0 +1,86 @@
+package com.example.stopsmoke;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Aggregated smoking statistics over a range of whole local days, bucketed by week.
+ * Produced by {@link DatabaseHelper#getProgressStats(long, long)} from a single query.
+ */
+public class ProgressStats {
+
+    private final long startDay;
+    private final int[] weeklyCounts;
+    private final int total;
+    private final int daysSmoked;
+    private final int peakDailyCount;
+
+    public ProgressStats(long startDay, int[] weeklyCounts, int daysSmoked, int peakDailyCount) {
+        this.startDay = startDay;
+        this.weeklyCounts = weeklyCounts;
+        this.daysSmoked = daysSmoked;
+        this.peakDailyCount = peakDailyCount;
+
+        int sum = 0;
+        for (int count : weeklyCounts) {
+            sum += count;
+        }
+        this.total = sum;
+    }
+
+    /**
+     * @return The local epoch day the first week starts on.
+     */
+    public long getStartDay() {
+        return startDay;
+    }
+
+    /**
+     * @return Number of week buckets in the range; the last one may be partial.
+     */
+    public int getWeekCount() {
+        return weeklyCounts.length;
+    }
+
+    /**
+     * @param week Zero-based week index from {@link #getStartDay()}.
+     * @return The number of cigarettes smoked in that week.
+     */
+    public int getWeeklyCount(int week) {
+        return weeklyCounts[week];
+    }
+
+    /**
+     * @return The number of cigarettes smoked in the whole range.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * @return The number of days in the range with at least one cigarette.
+     */
+    public int getDaysSmoked() {
+        return daysSmoked;
+    }
+
+    /**
+     * @return The highest number of cigarettes smoked on a single day in the range.
+     */
+    public int getPeakDailyCount() {
+        return peakDailyCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ProgressStats{" +
+                "startDay=" + startDay +
+                ", weeklyCounts=" + Arrays.toString(weeklyCounts) +
+                ", total=" + total +
+                ", daysSmoked=" + daysSmoked +
+                ", peakDailyCount=" + peakDailyCount +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.stopsmoke;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+
+/**
+ * Quick Settings tile that logs a cigarette when tapped and shows today's count and the
+ * next allowed time from the shared summary. Like {@link QuickLogWidget}, it writes
+ * through {@link CigaretteLogger} without starting an activity.
+ */
+public class QuickLogTileService extends TileService {
+
+    @Override
+    public void onStartListening() {
+        super.onStartListening();
+        SummarySnapshot summary = SummaryCache.get();
+        if (summary != null) {
+            render(summary);
+        } else {
+            LogRepository.getInstance(this).loadSummary(null, this::render);
+        }
+    }
+
+    @Override
+    public void onClick() {
+        super.onClick();
+        CigaretteLogger.log(this, null, nextTime -> {
+            SummarySnapshot summary = SummaryCache.get();
+            if (summary != null) {
+                render(summary);
+            }
+        });
+    }
+
+    /**
+     * Asks the system to refresh the tile, e.g. after the summary has changed elsewhere.
+     *
+     * @param context Any context.
+     */
+    static void requestUpdate(Context context) {
+        TileService.requestListeningState(context, new ComponentName(context, QuickLogTileService.class));
+    }
+
+    private void render(SummarySnapshot summary) {
+        Tile tile = getQsTile();
+        if (tile == null) {
+            // Not listening any more
+            return;
+        }
+        String smoked = summary.getSmokedToday() + " / " + summary.getAllowedToday() + " today";
+        tile.setState(Tile.STATE_ACTIVE);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            tile.setLabel("Log cigarette");
+            tile.setSubtitle(smoked + ", " + QuickLogWidget.describeNext(this, summary));
+        } else {
+            tile.setLabel("Log cigarette (" + smoked + ")");
+        }
+        tile.updateTile();
+    }
+}
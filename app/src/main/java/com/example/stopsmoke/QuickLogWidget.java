@@ -0,0 +1,94 @@
+package com.example.stopsmoke;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.text.format.DateFormat;
+import android.widget.RemoteViews;
+
+import java.util.Date;
+
+/**
+ * Home-screen widget that shows today's count and the next allowed time, and logs a
+ * cigarette when its button is tapped. Logging goes straight to {@link CigaretteLogger}
+ * from the broadcast, so no activity is started. The widget is redrawn whenever the
+ * shared summary changes (see {@link StopSmokeApplication}).
+ */
+public class QuickLogWidget extends AppWidgetProvider {
+
+    static final String ACTION_QUICK_LOG = "com.example.stopsmoke.ACTION_QUICK_LOG";
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
+        SummarySnapshot summary = SummaryCache.get();
+        if (summary != null) {
+            render(context, appWidgetManager, appWidgetIds, summary);
+            return;
+        }
+
+        // Keep the broadcast alive until the summary has been loaded off the main thread
+        final PendingResult pendingResult = goAsync();
+        LogRepository.getInstance(context).loadSummary(null, loaded -> {
+            render(context, appWidgetManager, appWidgetIds, loaded);
+            pendingResult.finish();
+        });
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (ACTION_QUICK_LOG.equals(intent.getAction())) {
+            // The write runs on the repository's writer thread; the summary listener redraws the widget
+            final PendingResult pendingResult = goAsync();
+            CigaretteLogger.log(context, null, nextTime -> pendingResult.finish());
+            return;
+        }
+        super.onReceive(context, intent);
+    }
+
+    /**
+     * Redraws every placed instance of the widget, if there are any.
+     *
+     * @param context Any context.
+     * @param summary The summary to show.
+     */
+    static void updateAll(Context context, SummarySnapshot summary) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, QuickLogWidget.class));
+        if (appWidgetIds.length > 0) {
+            render(context, appWidgetManager, appWidgetIds, summary);
+        }
+    }
+
+    /**
+     * Describes when the next cigarette is allowed, for surfaces that cannot tick a countdown.
+     *
+     * @param context Any context, used for the user's 12/24-hour preference.
+     * @param summary The summary holding the timer.
+     * @return The text to show.
+     */
+    static String describeNext(Context context, SummarySnapshot summary) {
+        long nextTime = summary.getNextCigaretteTime();
+        if (nextTime <= System.currentTimeMillis()) {
+            return "You can smoke now";
+        }
+        return "Next at " + DateFormat.getTimeFormat(context).format(new Date(nextTime));
+    }
+
+    private static void render(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds,
+                               SummarySnapshot summary) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_quick_log);
+        views.setTextViewText(R.id.widgetTextSmoked,
+                "Smoked Today: " + summary.getSmokedToday() + " / " + summary.getAllowedToday());
+        views.setTextViewText(R.id.widgetTextNext, describeNext(context, summary));
+
+        Intent intent = new Intent(context, QuickLogWidget.class).setAction(ACTION_QUICK_LOG);
+        PendingIntent logIntent = PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        views.setOnClickPendingIntent(R.id.widgetButtonLog, logIntent);
+
+        appWidgetManager.updateAppWidget(appWidgetIds, views);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.stopsmoke;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the database bounded once the user sets a retention period. Once a day, while the
+ * device is idle, raw logs older than that period are removed in small chunks; their counts
+ * live on in the rollups, so every total and statistic is unchanged. The freed pages are
+ * then returned to the file system with an incremental vacuum.
+ */
+public class RetentionWorker extends Worker {
+
+    private static final String UNIQUE_WORK_NAME = "retentionWork";
+
+    // Archiving is opt-in: by default every detailed log is kept forever
+    public static final int DEFAULT_RETENTION_MONTHS = 0;
+
+    // Rows per transaction, and pages released per run
+    private static final int CHUNK_SIZE = 500;
+    private static final int VACUUM_PAGES = 2000;
+
+    public RetentionWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules the daily run. An existing schedule is kept, so this is cheap to call on
+     * every process start.
+     *
+     * @param context Any context.
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiresDeviceIdle(true)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest workRequest = new PeriodicWorkRequest.Builder(RetentionWorker.class, 1, TimeUnit.DAYS)
+                .setConstraints(constraints)
+                .build();
+
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, workRequest);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        int months = SettingsStore.ensureLoaded(getApplicationContext()).getRetentionMonths();
+        if (months <= 0) {
+            return Result.success();
+        }
+
+        LogRepository repository = LogRepository.getInstance(getApplicationContext());
+        long cutoff = cutoffFor(System.currentTimeMillis(), months);
+
+        // One writer job per chunk, like every other write, so a cigarette logged meanwhile
+        // queues behind at most one short transaction
+        int deleted;
+        do {
+            deleted = repository.writeAndWait(db -> db.archiveLogsBefore(cutoff, CHUNK_SIZE));
+        } while (deleted == CHUNK_SIZE && !isStopped());
+
+        if (!isStopped()) {
+            repository.writeAndWait(db -> db.reclaimFreePages(VACUUM_PAGES));
+        }
+        return Result.success();
+    }
+
+    /**
+     * Returns the start of the local day the given number of months ago. Whole days are
+     * archived, so no day is ever split between raw rows and archived counts.
+     *
+     * @param nowMillis Current time in milliseconds since epoch.
+     * @param months    Retention period in months.
+     * @return The cutoff timestamp; older rows are archived.
+     */
+    static long cutoffFor(long nowMillis, int months) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(nowMillis);
+        calendar.add(Calendar.MONTH, -months);
+        return LocalDays.startOfDay(LocalDays.epochDay(calendar.getTimeInMillis()));
+    }
+}
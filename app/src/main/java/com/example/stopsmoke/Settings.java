@@ -0,0 +1,149 @@
+package com.example.stopsmoke;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Immutable set of everything the user configures, plus the running timer.
+ * Held in memory by {@link SettingsStore}; changes produce a new instance.
+ */
+public final class Settings {
+
+    static final int DEFAULT_ALLOWED_CIGS = 20;
+    static final int DEFAULT_REDUCTION_RATE = 1;
+
+    private final int allowedCigarettes;
+    private final int reductionRate;
+    private final long planStartDay;
+    private final int wakeMinute;
+    private final int sleepMinute;
+    private final int retentionMonths;
+    private final long lastCigaretteTime;
+    private final long nextCigaretteTime;
+
+    public Settings(int allowedCigarettes, int reductionRate, long planStartDay, int wakeMinute, int sleepMinute,
+                    int retentionMonths, long lastCigaretteTime, long nextCigaretteTime) {
+        this.allowedCigarettes = allowedCigarettes;
+        this.reductionRate = reductionRate;
+        this.planStartDay = planStartDay;
+        this.wakeMinute = wakeMinute;
+        this.sleepMinute = sleepMinute;
+        this.retentionMonths = retentionMonths;
+        this.lastCigaretteTime = lastCigaretteTime;
+        this.nextCigaretteTime = nextCigaretteTime;
+    }
+
+    /**
+     * Returns the settings of a fresh install, with the plan starting on the given day.
+     *
+     * @param planStartDay Local epoch day the plan starts on.
+     * @return The default settings.
+     */
+    static Settings defaults(long planStartDay) {
+        return new Settings(DEFAULT_ALLOWED_CIGS, DEFAULT_REDUCTION_RATE, planStartDay,
+                SlotPlanner.DEFAULT_WAKE_MINUTE, SlotPlanner.DEFAULT_SLEEP_MINUTE,
+                RetentionWorker.DEFAULT_RETENTION_MONTHS, 0, 0);
+    }
+
+    /**
+     * @return The number of cigarettes allowed per day in the first plan week.
+     */
+    public int getAllowedCigarettes() {
+        return allowedCigarettes;
+    }
+
+    /**
+     * @return The weekly reduction rate.
+     */
+    public int getReductionRate() {
+        return reductionRate;
+    }
+
+    /**
+     * @return The local epoch day the reduction plan started on.
+     */
+    public long getPlanStartDay() {
+        return planStartDay;
+    }
+
+    /**
+     * @return Start of the waking window, in minutes after local midnight.
+     */
+    public int getWakeMinute() {
+        return wakeMinute;
+    }
+
+    /**
+     * @return End of the waking window, in minutes after local midnight.
+     */
+    public int getSleepMinute() {
+        return sleepMinute;
+    }
+
+    /**
+     * @return How many months of detailed logs to keep; 0 keeps them forever.
+     */
+    public int getRetentionMonths() {
+        return retentionMonths;
+    }
+
+    /**
+     * @return Time of the last logged cigarette, or 0 if none.
+     */
+    public long getLastCigaretteTime() {
+        return lastCigaretteTime;
+    }
+
+    /**
+     * @return Time the next cigarette is allowed, or 0 if no timer is running.
+     */
+    public long getNextCigaretteTime() {
+        return nextCigaretteTime;
+    }
+
+    /**
+     * Returns a copy with a new reduction plan.
+     */
+    Settings withPlan(int allowedCigarettes, int reductionRate, long planStartDay) {
+        return new Settings(allowedCigarettes, reductionRate, planStartDay, wakeMinute, sleepMinute,
+                retentionMonths, lastCigaretteTime, nextCigaretteTime);
+    }
+
+    /**
+     * Returns a copy with a new waking window.
+     */
+    Settings withWindow(int wakeMinute, int sleepMinute) {
+        return new Settings(allowedCigarettes, reductionRate, planStartDay, wakeMinute, sleepMinute,
+                retentionMonths, lastCigaretteTime, nextCigaretteTime);
+    }
+
+    /**
+     * Returns a copy with a new retention period.
+     */
+    Settings withRetentionMonths(int retentionMonths) {
+        return new Settings(allowedCigarettes, reductionRate, planStartDay, wakeMinute, sleepMinute,
+                retentionMonths, lastCigaretteTime, nextCigaretteTime);
+    }
+
+    /**
+     * Returns a copy with new timer values; pass 0 for both to stop the timer.
+     */
+    Settings withTimer(long lastCigaretteTime, long nextCigaretteTime) {
+        return new Settings(allowedCigarettes, reductionRate, planStartDay, wakeMinute, sleepMinute,
+                retentionMonths, lastCigaretteTime, nextCigaretteTime);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "Settings{" +
+                "allowedCigarettes=" + allowedCigarettes +
+                ", reductionRate=" + reductionRate +
+                ", planStartDay=" + planStartDay +
+                ", wakeMinute=" + wakeMinute +
+                ", sleepMinute=" + sleepMinute +
+                ", retentionMonths=" + retentionMonths +
+                ", lastCigaretteTime=" + lastCigaretteTime +
+                ", nextCigaretteTime=" + nextCigaretteTime +
+                '}';
+    }
+}
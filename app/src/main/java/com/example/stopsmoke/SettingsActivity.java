@@ -1,28 +1,56 @@
 package com.example.stopsmoke;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
 
-import android.content.Intent;
-import android.content.SharedPreferences;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.net.Uri;
 import android.os.Bundle;
+import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import java.io.File;
+import java.util.Locale;
+import java.util.UUID;
 
 /**
- * SettingsActivity allows users to configure app settings,
- * including clearing the app's cache and smoking history.
+ * SettingsActivity allows users to configure app settings, export and import
+ * the smoking history, and clear the app's cache and smoking history.
  */
 public class SettingsActivity extends AppCompatActivity {
 
+    private static final String BACKUP_MIME_TYPE = "application/octet-stream";
+
     EditText editTextInitialCigs;
     EditText editTextReductionRate;
-
-    SharedPreferences prefs;
-    DatabaseHelper db;
+    EditText editTextWakeTime;
+    EditText editTextSleepTime;
+    EditText editTextRetentionMonths;
+    TextView textViewTransferStatus;
+
+    LogRepository repository;
+
+    // Document pickers for export (one per format) and import
+    private final ActivityResultLauncher<String> exportCsvLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(LogTransfer.Format.CSV.mimeType),
+            uri -> startExport(uri, LogTransfer.Format.CSV));
+    private final ActivityResultLauncher<String> exportJsonLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(LogTransfer.Format.JSON.mimeType),
+            uri -> startExport(uri, LogTransfer.Format.JSON));
+    private final ActivityResultLauncher<String[]> importLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::startImport);
+    private final ActivityResultLauncher<String> backupLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(BACKUP_MIME_TYPE), this::startBackup);
+    private final ActivityResultLauncher<String[]> restoreLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), this::showRestoreConfirmationDialog);
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -32,14 +60,19 @@ public class SettingsActivity extends AppCompatActivity {
         // Initialize views
         editTextInitialCigs = findViewById(R.id.editTextInitialCigs);
         editTextReductionRate = findViewById(R.id.editTextReductionRate);
+        editTextWakeTime = findViewById(R.id.editTextWakeTime);
+        editTextSleepTime = findViewById(R.id.editTextSleepTime);
+        editTextRetentionMonths = findViewById(R.id.editTextRetentionMonths);
+        textViewTransferStatus = findViewById(R.id.textViewTransferStatus);
         Button buttonSaveSettings = findViewById(R.id.buttonSaveSettings);
+        Button buttonExportHistory = findViewById(R.id.buttonExportHistory);
+        Button buttonImportHistory = findViewById(R.id.buttonImportHistory);
+        Button buttonBackupHistory = findViewById(R.id.buttonBackupHistory);
+        Button buttonRestoreBackup = findViewById(R.id.buttonRestoreBackup);
         Button buttonClearCacheHistory = findViewById(R.id.buttonClearCacheHistory);
 
-        // Initialize SharedPreferences
-        prefs = getSharedPreferences("StopSmokePrefs", MODE_PRIVATE);
-
-        // Initialize DatabaseHelper
-        db = new DatabaseHelper(this);
+        // Initialize LogRepository
+        repository = LogRepository.getInstance(this);
 
         // Load existing settings
         loadSettings();
@@ -47,24 +80,56 @@ public class SettingsActivity extends AppCompatActivity {
         // Set click listeners
         buttonSaveSettings.setOnClickListener(v -> saveSettings());
 
+        buttonExportHistory.setOnClickListener(v -> showExportFormatDialog());
+
+        buttonImportHistory.setOnClickListener(v -> importLauncher.launch(new String[]{
+                LogTransfer.Format.CSV.mimeType, LogTransfer.Format.JSON.mimeType,
+                "text/comma-separated-values", "text/plain"}));
+
+        buttonBackupHistory.setOnClickListener(v -> backupLauncher.launch("stopsmoke-backup.ssbk"));
+
+        buttonRestoreBackup.setOnClickListener(v -> restoreLauncher.launch(new String[]{BACKUP_MIME_TYPE, "*/*"}));
+
         buttonClearCacheHistory.setOnClickListener(v -> showClearCacheHistoryConfirmationDialog());
     }
 
     /**
-     * Loads existing settings into the input fields.
+     * Loads existing settings into the input fields, reading them off the main thread if
+     * they are not in memory yet.
      */
     private void loadSettings() {
-        int initialCigs = prefs.getInt("allowedCigarettes", 20);
-        int reductionRate = prefs.getInt("reductionRate", 1);
+        Settings settings = SettingsStore.get();
+        if (settings != null) {
+            showSettings(settings);
+        } else {
+            Context appContext = getApplicationContext();
+            repository.read(db -> SettingsStore.ensureLoaded(appContext), this, this::showSettings);
+        }
+    }
 
-        editTextInitialCigs.setText(String.valueOf(initialCigs));
-        editTextReductionRate.setText(String.valueOf(reductionRate));
+    /**
+     * Fills the input fields.
+     *
+     * @param settings The settings to show.
+     */
+    private void showSettings(Settings settings) {
+        editTextInitialCigs.setText(String.valueOf(settings.getAllowedCigarettes()));
+        editTextReductionRate.setText(String.valueOf(settings.getReductionRate()));
+        editTextWakeTime.setText(formatMinuteOfDay(settings.getWakeMinute()));
+        editTextSleepTime.setText(formatMinuteOfDay(settings.getSleepMinute()));
+        editTextRetentionMonths.setText(String.valueOf(settings.getRetentionMonths()));
     }
 
     /**
      * Saves the user settings from the input fields.
      */
     void saveSettings() {
+        // The fields are only filled once the settings have loaded
+        Settings current = SettingsStore.get();
+        if (current == null) {
+            return;
+        }
+
         String initialCigsStr = editTextInitialCigs.getText().toString();
         String reductionRateStr = editTextReductionRate.getText().toString();
 
@@ -89,22 +154,185 @@ public class SettingsActivity extends AppCompatActivity {
             return;
         }
 
-        // Save to SharedPreferences
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putInt("allowedCigarettes", initialCigs);
-        editor.putInt("reductionRate", reductionRate);
-        editor.apply();
+        // The waking window is optional; keep the current one if the fields are left empty
+        int wakeMinute = parseMinuteOfDay(editTextWakeTime.getText().toString(), current.getWakeMinute());
+        int sleepMinute = parseMinuteOfDay(editTextSleepTime.getText().toString(), current.getSleepMinute());
+        if (wakeMinute < 0 || sleepMinute < 0) {
+            Toast.makeText(this, "Please enter times as HH:mm.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (sleepMinute <= wakeMinute) {
+            Toast.makeText(this, "Sleep time must be after wake time.", Toast.LENGTH_SHORT).show();
+            return;
+        }
 
-        Toast.makeText(this, "Settings Saved!", Toast.LENGTH_SHORT).show();
+        // Retention is optional too; 0 keeps every detailed log
+        int retentionMonths = current.getRetentionMonths();
+        String retentionStr = editTextRetentionMonths.getText().toString().trim();
+        if (!retentionStr.isEmpty()) {
+            try {
+                retentionMonths = Integer.parseInt(retentionStr);
+            } catch (NumberFormatException e) {
+                retentionMonths = -1;
+            }
+            if (retentionMonths < 0) {
+                Toast.makeText(this, "Please enter a valid number of months.", Toast.LENGTH_SHORT).show();
+                return;
+            }
+        }
 
-        // Optionally, reset smokedToday
-        editor.putInt("smokedToday", 0);
-        editor.apply();
+        // Save every field in one update; the settings listener publishes it to every screen,
+        // and the slot planner picks it up on its next lookup
+        final int allowed = initialCigs;
+        final int rate = reductionRate;
+        final int months = retentionMonths;
+        SettingsStore.update(settings -> {
+            // A changed plan starts over from today; saving the same plan keeps its progress
+            long planStartDay = settings.getPlanStartDay();
+            if (allowed != settings.getAllowedCigarettes() || rate != settings.getReductionRate()) {
+                planStartDay = LocalDays.epochDay(System.currentTimeMillis());
+            }
+            return settings.withPlan(allowed, rate, planStartDay)
+                    .withWindow(wakeMinute, sleepMinute)
+                    .withRetentionMonths(months);
+        });
+
+        Toast.makeText(this, "Settings Saved!", Toast.LENGTH_SHORT).show();
 
         // Finish activity
         finish();
     }
 
+    /**
+     * Formats minutes after midnight as HH:mm.
+     *
+     * @param minuteOfDay Minutes after local midnight.
+     * @return The formatted time.
+     */
+    static String formatMinuteOfDay(int minuteOfDay) {
+        return String.format(Locale.US, "%02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+    }
+
+    /**
+     * Parses an HH:mm time into minutes after midnight.
+     *
+     * @param text         The text entered by the user.
+     * @param defaultValue Value returned when the text is empty.
+     * @return Minutes after local midnight, or -1 if the text is not a valid time.
+     */
+    static int parseMinuteOfDay(String text, int defaultValue) {
+        text = text.trim();
+        if (text.isEmpty()) {
+            return defaultValue;
+        }
+        String[] parts = text.split(":");
+        try {
+            int hours = Integer.parseInt(parts[0]);
+            int minutes = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            if (parts.length > 2 || hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+                return -1;
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Asks which format to export to, then lets the user pick the destination document.
+     */
+    private void showExportFormatDialog() {
+        new AlertDialog.Builder(this)
+                .setTitle("Export History")
+                .setItems(new String[]{"CSV", "JSON"}, (dialog, which) -> {
+                    if (which == 0) {
+                        exportCsvLauncher.launch("stopsmoke-history." + LogTransfer.Format.CSV.extension);
+                    } else {
+                        exportJsonLauncher.launch("stopsmoke-history." + LogTransfer.Format.JSON.extension);
+                    }
+                })
+                .show();
+    }
+
+    /**
+     * Starts exporting the history to the chosen document.
+     *
+     * @param uri    The document, or null if the picker was cancelled.
+     * @param format The file format.
+     */
+    private void startExport(Uri uri, LogTransfer.Format format) {
+        if (uri != null) {
+            observeTransfer(LogTransferWorker.enqueueExport(this, uri, format), "Exported");
+        }
+    }
+
+    /**
+     * Starts importing logs from the chosen document.
+     *
+     * @param uri The document, or null if the picker was cancelled.
+     */
+    private void startImport(Uri uri) {
+        if (uri != null) {
+            observeTransfer(LogTransferWorker.enqueueImport(this, uri), "Imported");
+        }
+    }
+
+    /**
+     * Starts writing a binary backup to the chosen document.
+     *
+     * @param uri The document, or null if the picker was cancelled.
+     */
+    private void startBackup(Uri uri) {
+        if (uri != null) {
+            observeTransfer(LogTransferWorker.enqueueBackup(this, uri), "Backed up");
+        }
+    }
+
+    /**
+     * Confirms before a backup replaces the whole history, then starts the restore.
+     *
+     * @param uri The backup document, or null if the picker was cancelled.
+     */
+    private void showRestoreConfirmationDialog(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Restore Backup")
+                .setMessage("Restoring replaces your whole smoking history with the backup. Continue?")
+                .setPositiveButton("Yes, Restore", (dialog, which) ->
+                        observeTransfer(LogTransferWorker.enqueueRestore(this, uri), "Restored"))
+                .setNegativeButton("No, Cancel", (dialog, which) -> dialog.dismiss())
+                .setIcon(android.R.drawable.ic_dialog_alert)
+                .show();
+    }
+
+    /**
+     * Shows the progress and outcome of a running export, import, backup or restore.
+     *
+     * @param id   The work request id.
+     * @param verb Past-tense verb used in the result message.
+     */
+    @SuppressLint("SetTextI18n")
+    private void observeTransfer(UUID id, String verb) {
+        textViewTransferStatus.setVisibility(View.VISIBLE);
+        WorkManager.getInstance(this).getWorkInfoByIdLiveData(id).observe(this, info -> {
+            if (info == null) {
+                return;
+            }
+            if (info.getState() == WorkInfo.State.SUCCEEDED) {
+                long rows = info.getOutputData().getLong(LogTransferWorker.KEY_ROWS, 0);
+                textViewTransferStatus.setText(verb + " " + rows + " logs.");
+            } else if (info.getState() == WorkInfo.State.FAILED || info.getState() == WorkInfo.State.CANCELLED) {
+                String error = info.getOutputData().getString(LogTransferWorker.KEY_ERROR);
+                textViewTransferStatus.setText(error != null ? "Transfer failed: " + error : "Transfer failed.");
+            } else {
+                int progress = info.getProgress().getInt(LogTransferWorker.KEY_PROGRESS, 0);
+                textViewTransferStatus.setText("Working\u2026 " + progress + "%");
+            }
+        });
+    }
+
     /**
      * Displays a confirmation dialog before clearing cache and history.
      */
@@ -122,33 +350,45 @@ public class SettingsActivity extends AppCompatActivity {
      * Clears the app's cache, deletes all cigarette logs, and stops any running timers.
      */
     private void clearCacheAndHistory() {
-        try {
+        // Everything runs in one job on the repository's writer thread, so the reset completes
+        // even if this screen is gone by the time the history has been deleted
+        Context appContext = getApplicationContext();
+        repository.write(db -> {
             boolean cacheCleared = clearCache();
-            boolean historyCleared = clearSmokingHistory();
-
-            if (cacheCleared && historyCleared) {
-                Toast.makeText(this, "Cache and Smoking History cleared successfully.", Toast.LENGTH_SHORT).show();
-                // Reset timer-related SharedPreferences
-                SharedPreferences.Editor editor = prefs.edit();
-                editor.remove("nextCigaretteTime");
-                editor.remove("lastCigaretteTime");
-                editor.putInt("smokedToday", 0);
-                editor.apply();
-
-                // Send broadcast to notify MainActivity
-                Intent intent = new Intent("com.example.stopsmoke.ACTION_CLEAR_CACHE_HISTORY");
-                sendBroadcast(intent);
-            } else {
-                Toast.makeText(this, "Failed to clear Cache and/or Smoking History.", Toast.LENGTH_SHORT).show();
+            boolean historyCleared = clearSmokingHistory(db);
+            if (historyCleared) {
+                resetTimerState(appContext);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            Toast.makeText(this, "An error occurred while clearing cache and history.", Toast.LENGTH_SHORT).show();
+            return cacheCleared && historyCleared;
+        }, this, this::onCacheAndHistoryCleared);
+    }
+
+    /**
+     * Stops the timer and zeroes today's count after the history has been deleted.
+     * Must not be called on the main thread.
+     *
+     * @param appContext The application context.
+     */
+    private static void resetTimerState(Context appContext) {
+        SummaryCache.update(summary -> summary.withSmokedToday(0));
+        CigaretteLogger.stopTimer(appContext);
+    }
+
+    /**
+     * Reports the outcome of clearing cache and history.
+     *
+     * @param cleared True if both the cache and the smoking history were cleared.
+     */
+    private void onCacheAndHistoryCleared(boolean cleared) {
+        if (cleared) {
+            Toast.makeText(this, "Cache and Smoking History cleared successfully.", Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, "Failed to clear Cache and/or Smoking History.", Toast.LENGTH_SHORT).show();
         }
     }
 
     /**
-     * Clears the app's cache directory.
+     * Clears the app's cache directory. Must not be called on the main thread.
      *
      * @return True if cache was cleared successfully, false otherwise.
      */
@@ -166,11 +406,12 @@ public class SettingsActivity extends AppCompatActivity {
     }
 
     /**
-     * Deletes all cigarette logs from the database.
+     * Deletes all cigarette logs from the database. Must not be called on the main thread.
      *
+     * @param db The database to clear.
      * @return True if history was cleared successfully, false otherwise.
      */
-    boolean clearSmokingHistory() {
+    boolean clearSmokingHistory(DatabaseHelper db) {
         try {
             return db.deleteAllLogs();
         } catch (Exception e) {
@@ -0,0 +1,198 @@
+package com.example.stopsmoke;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Process-wide owner of the {@link Settings} and the only code that knows their
+ * SharedPreferences keys. The settings are read from disk once, off the main thread, and
+ * served from memory afterwards. Each update swaps in a new immutable instance and writes
+ * only the changed keys, in a single asynchronous {@code apply()}.
+ */
+public final class SettingsStore {
+
+    /**
+     * Notified after every change, on the thread that made it and in the order the changes
+     * were made. Listeners that touch views must post to the main thread themselves.
+     */
+    public interface Listener {
+        void onSettingsChanged(Settings settings);
+    }
+
+    /**
+     * A copy-on-write change applied to the current settings.
+     */
+    interface Update {
+        Settings apply(Settings current);
+    }
+
+    // SharedPreferences keys
+    private static final String PREFS_NAME = "StopSmokePrefs";
+    private static final String KEY_ALLOWED_CIGS = "allowedCigarettes";
+    private static final String KEY_REDUCTION_RATE = "reductionRate";
+    private static final String KEY_PLAN_START_DAY = "planStartDay";
+    private static final String KEY_WAKE_MINUTE = "wakeMinute";
+    private static final String KEY_SLEEP_MINUTE = "sleepMinute";
+    private static final String KEY_RETENTION_MONTHS = "retentionMonths";
+    private static final String KEY_LAST_CIG_TIME = "lastCigaretteTime";
+    private static final String KEY_NEXT_CIG_TIME = "nextCigaretteTime";
+
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    // Written under the class lock; read without it
+    private static volatile Settings current;
+    private static SharedPreferences prefs;
+
+    private SettingsStore() {
+    }
+
+    /**
+     * Returns the current settings. Never blocks and never touches disk.
+     *
+     * @return The settings, or null if they have not been loaded yet.
+     */
+    @Nullable
+    public static Settings get() {
+        return current;
+    }
+
+    /**
+     * Returns the current settings, reading them from disk first if needed. May touch disk,
+     * so call it only from a background thread.
+     *
+     * @param context Any context.
+     * @return The current settings.
+     */
+    static Settings ensureLoaded(Context context) {
+        Settings settings = current;
+        if (settings != null) {
+            return settings;
+        }
+        synchronized (SettingsStore.class) {
+            if (current == null) {
+                prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+                current = read(prefs);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Applies a change, persists the keys it touched and notifies listeners. Updates are
+     * serialized, so concurrent changes neither lose each other nor reach disk out of order.
+     * Only the in-memory copy is written synchronously, so this is safe on the main thread.
+     *
+     * @param update The change to apply.
+     * @return The new settings.
+     * @throws IllegalStateException If the settings have not been loaded yet.
+     */
+    static synchronized Settings update(Update update) {
+        Settings previous = current;
+        if (previous == null) {
+            throw new IllegalStateException("Settings have not been loaded yet");
+        }
+        Settings next = update.apply(previous);
+        if (write(previous, next)) {
+            current = next;
+            for (Listener listener : listeners) {
+                listener.onSettingsChanged(next);
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Drops the in-memory settings so the next load reads them from disk again.
+     */
+    @VisibleForTesting
+    static synchronized void clear() {
+        current = null;
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private static Settings read(SharedPreferences prefs) {
+        Settings defaults = Settings.defaults(LocalDays.epochDay(System.currentTimeMillis()));
+
+        // Installs from before the taper plan have no start day yet; their plan starts today
+        if (!prefs.contains(KEY_PLAN_START_DAY)) {
+            prefs.edit().putLong(KEY_PLAN_START_DAY, defaults.getPlanStartDay()).apply();
+        }
+
+        return new Settings(
+                prefs.getInt(KEY_ALLOWED_CIGS, defaults.getAllowedCigarettes()),
+                prefs.getInt(KEY_REDUCTION_RATE, defaults.getReductionRate()),
+                prefs.getLong(KEY_PLAN_START_DAY, defaults.getPlanStartDay()),
+                prefs.getInt(KEY_WAKE_MINUTE, defaults.getWakeMinute()),
+                prefs.getInt(KEY_SLEEP_MINUTE, defaults.getSleepMinute()),
+                prefs.getInt(KEY_RETENTION_MONTHS, defaults.getRetentionMonths()),
+                prefs.getLong(KEY_LAST_CIG_TIME, 0),
+                prefs.getLong(KEY_NEXT_CIG_TIME, 0));
+    }
+
+    /**
+     * Writes the keys whose values differ in one editor. A stopped timer removes its keys.
+     *
+     * @return True if anything changed.
+     */
+    private static boolean write(Settings previous, Settings next) {
+        SharedPreferences.Editor editor = prefs.edit();
+        boolean changed = false;
+        if (next.getAllowedCigarettes() != previous.getAllowedCigarettes()) {
+            editor.putInt(KEY_ALLOWED_CIGS, next.getAllowedCigarettes());
+            changed = true;
+        }
+        if (next.getReductionRate() != previous.getReductionRate()) {
+            editor.putInt(KEY_REDUCTION_RATE, next.getReductionRate());
+            changed = true;
+        }
+        if (next.getPlanStartDay() != previous.getPlanStartDay()) {
+            editor.putLong(KEY_PLAN_START_DAY, next.getPlanStartDay());
+            changed = true;
+        }
+        if (next.getWakeMinute() != previous.getWakeMinute()) {
+            editor.putInt(KEY_WAKE_MINUTE, next.getWakeMinute());
+            changed = true;
+        }
+        if (next.getSleepMinute() != previous.getSleepMinute()) {
+            editor.putInt(KEY_SLEEP_MINUTE, next.getSleepMinute());
+            changed = true;
+        }
+        if (next.getRetentionMonths() != previous.getRetentionMonths()) {
+            editor.putInt(KEY_RETENTION_MONTHS, next.getRetentionMonths());
+            changed = true;
+        }
+        if (next.getLastCigaretteTime() != previous.getLastCigaretteTime()) {
+            putOrRemove(editor, KEY_LAST_CIG_TIME, next.getLastCigaretteTime());
+            changed = true;
+        }
+        if (next.getNextCigaretteTime() != previous.getNextCigaretteTime()) {
+            putOrRemove(editor, KEY_NEXT_CIG_TIME, next.getNextCigaretteTime());
+            changed = true;
+        }
+        if (changed) {
+            editor.apply();
+        }
+        return changed;
+    }
+
+    private static void putOrRemove(SharedPreferences.Editor editor, String key, long value) {
+        if (value == 0) {
+            editor.remove(key);
+        } else {
+            editor.putLong(key, value);
+        }
+    }
+}
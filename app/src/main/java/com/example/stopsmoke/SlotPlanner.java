@@ -0,0 +1,140 @@
+package com.example.stopsmoke;
+
+import java.util.Calendar;
+
+/**
+ * Spreads the day's allowance evenly over the waking window and answers "when is the next
+ * cigarette allowed" and "how many slots are left" from that schedule.
+ * The plan for a day is computed once and cached; it is only recomputed when the day or
+ * one of its inputs (allowance, wake or sleep time) changes. Lookups are plain arithmetic
+ * on the cached plan, so they take constant time.
+ */
+public final class SlotPlanner {
+
+    // Default waking window: 07:00 to 23:00, i.e. 16 hours
+    public static final int DEFAULT_WAKE_MINUTE = 7 * 60;
+    public static final int DEFAULT_SLEEP_MINUTE = 23 * 60;
+
+    private static final SlotPlanner instance = new SlotPlanner();
+
+    // Last computed plan; immutable, so it can be swapped without locking
+    private volatile DayPlan cached;
+
+    // Package-private so tests can start from an empty cache
+    SlotPlanner() {
+    }
+
+    /**
+     * @return The process-wide planner.
+     */
+    public static SlotPlanner getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the time the next cigarette is allowed after one smoked at {@code afterMillis}.
+     * This is the first slot at least one slot interval after that time, so two cigarettes
+     * are never closer than the plan's spacing, even when one is smoked just before a slot
+     * starts. If today's allowance is used up, or no slot is left before sleep time, it is
+     * the start of tomorrow's waking window.
+     *
+     * @param afterMillis Time of the cigarette just smoked, in milliseconds since epoch.
+     * @param smokedToday Cigarettes smoked today, including that one.
+     * @param allowance   Cigarettes allowed today.
+     * @param wakeMinute  Start of the waking window, in minutes after local midnight.
+     * @param sleepMinute End of the waking window, in minutes after local midnight.
+     * @return The next allowed time in milliseconds since epoch.
+     */
+    public long nextAllowedTime(long afterMillis, int smokedToday, int allowance, int wakeMinute, int sleepMinute) {
+        long day = LocalDays.epochDay(afterMillis);
+        DayPlan plan = planFor(day, allowance, wakeMinute, sleepMinute);
+        int slot = plan.firstSlotAtOrAfter(afterMillis + plan.interval);
+        if (smokedToday >= allowance || slot >= plan.slotCount) {
+            return wallClock(day + 1, wakeMinute);
+        }
+        return plan.slotTime(slot);
+    }
+
+    /**
+     * Returns how many cigarettes can still be smoked today in the remaining slots.
+     *
+     * @param nowMillis   Current time in milliseconds since epoch.
+     * @param smokedToday Cigarettes smoked today.
+     * @param allowance   Cigarettes allowed today.
+     * @param wakeMinute  Start of the waking window, in minutes after local midnight.
+     * @param sleepMinute End of the waking window, in minutes after local midnight.
+     * @return The number of slots left, never negative.
+     */
+    public int slotsRemaining(long nowMillis, int smokedToday, int allowance, int wakeMinute, int sleepMinute) {
+        DayPlan plan = planFor(LocalDays.epochDay(nowMillis), allowance, wakeMinute, sleepMinute);
+        int remaining = plan.slotCount - plan.firstSlotAtOrAfter(nowMillis);
+        return Math.max(Math.min(remaining, allowance - smokedToday), 0);
+    }
+
+    /**
+     * Returns the cached plan for a day, recomputing it only if an input changed.
+     */
+    DayPlan planFor(long epochDay, int allowance, int wakeMinute, int sleepMinute) {
+        DayPlan plan = cached;
+        if (plan == null || !plan.matches(epochDay, allowance, wakeMinute, sleepMinute)) {
+            plan = new DayPlan(epochDay, allowance, wakeMinute, sleepMinute);
+            cached = plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Converts a local wall-clock time on an epoch day to a timestamp, honouring DST.
+     */
+    private static long wallClock(long epochDay, int minuteOfDay) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(LocalDays.startOfDay(epochDay));
+        calendar.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+        calendar.set(Calendar.MINUTE, minuteOfDay % 60);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * The evenly spaced slots of one day: slot i starts at {@code start + i * interval}.
+     */
+    static final class DayPlan {
+
+        final long epochDay;
+        final int allowance;
+        final int wakeMinute;
+        final int sleepMinute;
+        final int slotCount;
+        final long start;
+        final long interval;
+
+        DayPlan(long epochDay, int allowance, int wakeMinute, int sleepMinute) {
+            this.epochDay = epochDay;
+            this.allowance = allowance;
+            this.wakeMinute = wakeMinute;
+            this.sleepMinute = sleepMinute;
+            this.slotCount = Math.max(allowance, 0);
+            this.start = wallClock(epochDay, wakeMinute);
+            long end = wallClock(epochDay, sleepMinute);
+            this.interval = slotCount > 0 ? Math.max((end - start) / slotCount, 1) : 1;
+        }
+
+        boolean matches(long epochDay, int allowance, int wakeMinute, int sleepMinute) {
+            return this.epochDay == epochDay && this.allowance == allowance
+                    && this.wakeMinute == wakeMinute && this.sleepMinute == sleepMinute;
+        }
+
+        long slotTime(int slot) {
+            return start + slot * interval;
+        }
+
+        /**
+         * Index of the first slot starting at or after a time; slotCount if none.
+         */
+        int firstSlotAtOrAfter(long millis) {
+            if (millis <= start) {
+                return 0;
+            }
+            return (int) Math.min((millis - start + interval - 1) / interval, slotCount);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.stopsmoke;
+
+import android.app.Application;
+
+/**
+ * Application entry point. Registers the notification channels, links the settings to the
+ * summary, schedules the retention worker and starts loading the shared summary as soon as
+ * the process starts, so screens, receivers and workers usually find everything ready.
+ */
+public class StopSmokeApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Register every notification channel once per process
+        NotificationRegistry.getInstance(this).registerChannels();
+
+        // Keep the widget and the Quick Settings tile in step with every summary change
+        SummaryCache.addListener(summary -> {
+            QuickLogWidget.updateAll(this, summary);
+            QuickLogTileService.requestUpdate(this);
+        });
+
+        // Every settings change reaches the summary, whichever screen or worker made it
+        SettingsStore.addListener(settings -> SummaryCache.update(summary -> summary.withSettings(settings)));
+
+        // Keep the database bounded by archiving old raw logs once a day
+        RetentionWorker.schedule(this);
+
+        // Warm the summary cache off the main thread
+        LogRepository.getInstance(this).loadSummary(null, null);
+    }
+}
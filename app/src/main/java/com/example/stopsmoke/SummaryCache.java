@@ -0,0 +1,135 @@
+package com.example.stopsmoke;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Process-wide holder of the current {@link SummarySnapshot}.
+ * The snapshot is loaded once off the main thread, then kept current by the code paths that
+ * write logs and by a {@link SettingsStore} listener. Readers get the latest snapshot without
+ * locking or touching disk.
+ */
+public final class SummaryCache {
+
+    /**
+     * Notified on the main thread whenever a new snapshot is published.
+     */
+    public interface Listener {
+        void onSummaryChanged(SummarySnapshot summary);
+    }
+
+    /**
+     * A copy-on-write change applied to the current snapshot.
+     */
+    interface Update {
+        SummarySnapshot apply(SummarySnapshot current);
+    }
+
+    private static final AtomicReference<SummarySnapshot> current = new AtomicReference<>();
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private SummaryCache() {
+    }
+
+    /**
+     * Returns the current snapshot, rolled over to today if the day has changed since it
+     * was published. Never blocks and never touches disk.
+     *
+     * @return The snapshot, or null if it has not been loaded yet.
+     */
+    @Nullable
+    public static SummarySnapshot get() {
+        long today = LocalDays.epochDay(System.currentTimeMillis());
+        while (true) {
+            SummarySnapshot snapshot = current.get();
+            if (snapshot == null || snapshot.getEpochDay() == today) {
+                return snapshot;
+            }
+            SummarySnapshot rolled = snapshot.forDay(today);
+            if (current.compareAndSet(snapshot, rolled)) {
+                return rolled;
+            }
+        }
+    }
+
+    /**
+     * Returns the current snapshot, loading it first if needed. May touch disk, so call it
+     * only from a background thread.
+     *
+     * @param context Any context.
+     * @param db      The database used for the initial load.
+     * @return The current snapshot.
+     */
+    static SummarySnapshot ensureLoaded(Context context, DatabaseHelper db) {
+        SummarySnapshot snapshot = get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        SummarySnapshot loaded = SummarySnapshot.load(context, db);
+        if (current.compareAndSet(null, loaded)) {
+            notifyListeners(loaded);
+        }
+
+        // Settings saved while the count was loading were not seen by the settings listener
+        Settings settings = SettingsStore.get();
+        if (settings != null && settings != loaded.getSettings()) {
+            update(summary -> summary.withSettings(SettingsStore.get()));
+        }
+        return get();
+    }
+
+    /**
+     * Atomically applies a change to the current snapshot and notifies listeners.
+     * Does nothing if the snapshot has not been loaded yet, since the load will observe the change.
+     *
+     * @param update The change to apply.
+     */
+    static void update(Update update) {
+        long today = LocalDays.epochDay(System.currentTimeMillis());
+        while (true) {
+            SummarySnapshot snapshot = current.get();
+            if (snapshot == null) {
+                return;
+            }
+            SummarySnapshot base = snapshot.getEpochDay() == today ? snapshot : snapshot.forDay(today);
+            SummarySnapshot updated = update.apply(base);
+            if (current.compareAndSet(snapshot, updated)) {
+                notifyListeners(updated);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Drops the current snapshot so the next load starts from disk again.
+     */
+    @VisibleForTesting
+    static void clear() {
+        current.set(null);
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private static void notifyListeners(SummarySnapshot summary) {
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onSummaryChanged(summary);
+            }
+        });
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.stopsmoke;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import java.util.Date;
+
+/**
+ * Immutable view of everything the screens show at a glance: the current {@link Settings}
+ * and today's allowance, how many cigarettes were smoked today and when the next one is allowed.
+ * Updates produce a new snapshot; see {@link SummaryCache}.
+ */
+public final class SummarySnapshot {
+
+    private final long epochDay;
+    private final Settings settings;
+    private final int smokedToday;
+
+    public SummarySnapshot(long epochDay, Settings settings, int smokedToday) {
+        this.epochDay = epochDay;
+        this.settings = settings;
+        this.smokedToday = smokedToday;
+    }
+
+    /**
+     * Builds a snapshot from the settings store and the database. This touches disk and
+     * must not be called on the main thread.
+     *
+     * @param context Any context.
+     * @param db      The database to count today's cigarettes in.
+     * @return A snapshot for the current local day.
+     */
+    static SummarySnapshot load(Context context, DatabaseHelper db) {
+        long now = System.currentTimeMillis();
+        return new SummarySnapshot(LocalDays.epochDay(now), SettingsStore.ensureLoaded(context),
+                db.countCigarettesOn(new Date(now)));
+    }
+
+    /**
+     * @return The local epoch day this snapshot's daily count belongs to.
+     */
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    /**
+     * @return The settings this snapshot was built from.
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return The configured number of cigarettes allowed per day in the first plan week.
+     */
+    public int getAllowedCigarettes() {
+        return settings.getAllowedCigarettes();
+    }
+
+    /**
+     * @return The configured weekly reduction rate.
+     */
+    public int getReductionRate() {
+        return settings.getReductionRate();
+    }
+
+    /**
+     * @return The local epoch day the reduction plan started on.
+     */
+    public long getPlanStartDay() {
+        return settings.getPlanStartDay();
+    }
+
+    /**
+     * @return The number of cigarettes the reduction plan allows on {@link #getEpochDay()}.
+     */
+    public int getAllowedToday() {
+        return TaperPlan.getInstance().allowanceOn(epochDay, settings.getAllowedCigarettes(),
+                settings.getReductionRate(), settings.getPlanStartDay());
+    }
+
+    /**
+     * Returns the total number of cigarettes the reduction plan allows over a range of days.
+     *
+     * @param fromDay First local epoch day of the range.
+     * @param toDay   Last local epoch day of the range, inclusive.
+     * @return The allowed total.
+     */
+    public long getAllowedBetween(long fromDay, long toDay) {
+        return TaperPlan.getInstance().allowedBetween(fromDay, toDay, settings.getAllowedCigarettes(),
+                settings.getReductionRate(), settings.getPlanStartDay());
+    }
+
+    /**
+     * @return Start of the waking window, in minutes after local midnight.
+     */
+    public int getWakeMinute() {
+        return settings.getWakeMinute();
+    }
+
+    /**
+     * @return End of the waking window, in minutes after local midnight.
+     */
+    public int getSleepMinute() {
+        return settings.getSleepMinute();
+    }
+
+    /**
+     * @return The number of cigarettes smoked on {@link #getEpochDay()}.
+     */
+    public int getSmokedToday() {
+        return smokedToday;
+    }
+
+    /**
+     * @return Time of the last logged cigarette, or 0 if none.
+     */
+    public long getLastCigaretteTime() {
+        return settings.getLastCigaretteTime();
+    }
+
+    /**
+     * @return Time the next cigarette is allowed, or 0 if no timer is running.
+     */
+    public long getNextCigaretteTime() {
+        return settings.getNextCigaretteTime();
+    }
+
+    /**
+     * Returns this snapshot moved to another day. Only today's count is day-specific, so it
+     * starts again from zero; every log written afterwards is applied through {@link #withLogged}.
+     */
+    SummarySnapshot forDay(long day) {
+        return new SummarySnapshot(day, settings, 0);
+    }
+
+    /**
+     * Returns a copy that accounts for newly logged cigarettes.
+     *
+     * @param timestamps Timestamps of the inserted logs.
+     */
+    SummarySnapshot withLogged(long... timestamps) {
+        int added = 0;
+        for (long timestamp : timestamps) {
+            if (LocalDays.epochDay(timestamp) == epochDay) {
+                added++;
+            }
+        }
+        return new SummarySnapshot(epochDay, settings, smokedToday + added);
+    }
+
+    /**
+     * Returns a copy with a recounted daily total.
+     */
+    SummarySnapshot withSmokedToday(int smokedToday) {
+        return new SummarySnapshot(epochDay, settings, smokedToday);
+    }
+
+    /**
+     * Returns a copy with new settings.
+     */
+    SummarySnapshot withSettings(Settings settings) {
+        return new SummarySnapshot(epochDay, settings, smokedToday);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SummarySnapshot{" +
+                "epochDay=" + epochDay +
+                ", settings=" + settings +
+                ", smokedToday=" + smokedToday +
+                '}';
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.stopsmoke;
+
+/**
+ * The reduction plan: the daily allowance starts at the initial value on the plan's start
+ * day and drops by the reduction rate at the start of every following plan week, never
+ * going below zero.
+ * Both today's allowance and the allowed total over any range of days are closed-form,
+ * so no caller has to loop over weeks. Today's allowance is cached per day and only
+ * recomputed when the day or the plan changes.
+ */
+public final class TaperPlan {
+
+    private static final int DAYS_PER_WEEK = 7;
+
+    private static final TaperPlan instance = new TaperPlan();
+
+    // Last computed daily allowance; immutable, so it can be swapped without locking
+    private volatile DayAllowance cached;
+
+    // Package-private so tests can start from an empty cache
+    TaperPlan() {
+    }
+
+    /**
+     * @return The process-wide plan engine.
+     */
+    public static TaperPlan getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the number of cigarettes allowed on a day. Days before the plan start get the
+     * initial allowance.
+     *
+     * @param epochDay      The local epoch day to look up.
+     * @param initial       Cigarettes allowed per day in the first plan week.
+     * @param reductionRate How many fewer cigarettes are allowed per day each week.
+     * @param startDay      Local epoch day the plan started on.
+     * @return The day's allowance, never negative.
+     */
+    public int allowanceOn(long epochDay, int initial, int reductionRate, long startDay) {
+        DayAllowance entry = cached;
+        if (entry == null || !entry.matches(epochDay, initial, reductionRate, startDay)) {
+            entry = new DayAllowance(epochDay, initial, reductionRate, startDay,
+                    weeklyAllowance(weekOf(epochDay, startDay), initial, reductionRate));
+            cached = entry;
+        }
+        return entry.allowance;
+    }
+
+    /**
+     * Returns the total number of cigarettes allowed from one day to another, both inclusive.
+     *
+     * @param fromDay       First local epoch day of the range.
+     * @param toDay         Last local epoch day of the range.
+     * @param initial       Cigarettes allowed per day in the first plan week.
+     * @param reductionRate How many fewer cigarettes are allowed per day each week.
+     * @param startDay      Local epoch day the plan started on.
+     * @return The allowed total, or 0 for an empty range.
+     */
+    public long allowedBetween(long fromDay, long toDay, int initial, int reductionRate, long startDay) {
+        if (toDay < fromDay) {
+            return 0;
+        }
+        return allowedBefore(toDay + 1 - startDay, initial, reductionRate)
+                - allowedBefore(fromDay - startDay, initial, reductionRate);
+    }
+
+    /**
+     * Returns the plan week a day falls in; days before the start count as week 0.
+     */
+    static long weekOf(long epochDay, long startDay) {
+        return Math.max(Math.floorDiv(epochDay - startDay, (long) DAYS_PER_WEEK), 0);
+    }
+
+    private static int weeklyAllowance(long week, int initial, int reductionRate) {
+        return (int) Math.max(initial - reductionRate * week, 0);
+    }
+
+    /**
+     * Sum of the daily allowances over plan days [0, offset). A negative offset gives minus
+     * the sum over [offset, 0), where every day gets the initial allowance, so the difference
+     * of two calls is the total over any range.
+     */
+    private static long allowedBefore(long offset, int initial, int reductionRate) {
+        if (offset <= 0) {
+            return offset * initial;
+        }
+        long fullWeeks = offset / DAYS_PER_WEEK;
+        long extraDays = offset % DAYS_PER_WEEK;
+        return DAYS_PER_WEEK * allowedWeeks(fullWeeks, initial, reductionRate)
+                + extraDays * weeklyAllowance(fullWeeks, initial, reductionRate);
+    }
+
+    /**
+     * Sum of the per-day allowances of weeks [0, weeks): an arithmetic series that stops
+     * once the allowance reaches zero.
+     */
+    private static long allowedWeeks(long weeks, int initial, int reductionRate) {
+        long nonZero = weeks;
+        if (reductionRate > 0) {
+            // Weeks 0 .. ceil(initial / rate) - 1 still allow something
+            nonZero = Math.min(weeks, (initial + reductionRate - 1) / reductionRate);
+        }
+        return nonZero * initial - (long) reductionRate * nonZero * (nonZero - 1) / 2;
+    }
+
+    /**
+     * A day's allowance together with the inputs it was computed from.
+     */
+    private static final class DayAllowance {
+
+        final long epochDay;
+        final int initial;
+        final int reductionRate;
+        final long startDay;
+        final int allowance;
+
+        DayAllowance(long epochDay, int initial, int reductionRate, long startDay, int allowance) {
+            this.epochDay = epochDay;
+            this.initial = initial;
+            this.reductionRate = reductionRate;
+            this.startDay = startDay;
+            this.allowance = allowance;
+        }
+
+        boolean matches(long epochDay, int initial, int reductionRate, long startDay) {
+            return this.epochDay == epochDay && this.initial == initial
+                    && this.reductionRate == reductionRate && this.startDay == startDay;
+        }
+    }
+}
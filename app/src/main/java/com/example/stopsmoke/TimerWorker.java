@@ -1,57 +1,78 @@
 package com.example.stopsmoke;
 
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
 import android.content.Context;
-import android.os.Build;
 
 import androidx.annotation.NonNull;
-import androidx.core.app.NotificationCompat;
-import androidx.core.app.NotificationManagerCompat;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts the "you can smoke now" notification when the next allowed time arrives.
+ * This worker is the only place that notification is sent from: it is scheduled when a
+ * cigarette is logged, so it fires whether or not the app is still running, and the
+ * in-app countdown only updates the screen.
+ */
 public class TimerWorker extends Worker {
 
-    private static final String CHANNEL_ID = "timer_channel";
+    private static final String UNIQUE_WORK_NAME = "timerWork";
+    private static final String KEY_TARGET_TIME = "targetTime";
 
     public TimerWorker(@NonNull Context context, @NonNull WorkerParameters params) {
         super(context, params);
     }
 
-    @NonNull
-    @Override
-    public Result doWork() {
-        sendTimerCompletedNotification();
-        return Result.success();
+    /**
+     * Schedules the notification for the next allowed time, replacing any pending one so
+     * at most one is ever queued.
+     *
+     * @param context           Any context.
+     * @param nextCigaretteTime Time the next cigarette is allowed, in milliseconds since epoch.
+     */
+    public static void schedule(Context context, long nextCigaretteTime) {
+        long delay = Math.max(nextCigaretteTime - System.currentTimeMillis(), 0);
+        OneTimeWorkRequest workRequest = new OneTimeWorkRequest.Builder(TimerWorker.class)
+                .setInitialDelay(delay, TimeUnit.MILLISECONDS)
+                .setInputData(new Data.Builder().putLong(KEY_TARGET_TIME, nextCigaretteTime).build())
+                .build();
+
+        WorkManager.getInstance(context).enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.REPLACE, workRequest);
     }
 
     /**
-     * Sends a notification indicating that the timer has completed.
+     * Cancels the pending notification, e.g. after the history has been cleared.
+     *
+     * @param context Any context.
      */
-    private void sendTimerCompletedNotification() {
-        Context context = getApplicationContext();
-
-        // Create a notification channel if necessary (for Android O and above)
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
-                    "Timer Notifications",
-                    NotificationManager.IMPORTANCE_DEFAULT);
-            channel.setDescription("Notifications for when you can smoke your next cigarette.");
-            NotificationManager manager = context.getSystemService(NotificationManager.class);
-            manager.createNotificationChannel(channel);
+    public static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_WORK_NAME);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        // Only notify for the timer that is still current; a newer log or a cleared
+        // history changes the persisted time and makes this run obsolete
+        long targetTime = getInputData().getLong(KEY_TARGET_TIME, 0);
+        long nextCigTime = SettingsStore.ensureLoaded(getApplicationContext()).getNextCigaretteTime();
+        if (targetTime != 0 && targetTime != nextCigTime) {
+            return Result.success();
         }
 
-        // Build the notification
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(R.drawable.ic_notification) // Ensure this icon exists
-                .setContentTitle("StopSmoke")
-                .setContentText("You can smoke your next cigarette now.")
-                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
-                .setAutoCancel(true);
-
-        // Show the notification
-        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
-        notificationManager.notify(1001, builder.build());
+        NotificationRegistry.getInstance(getApplicationContext()).notifyTimerCompleted();
+
+        // The widget and tile show the next allowed time, which has now passed. A cold process
+        // redraws them once the summary has loaded, through the listener in StopSmokeApplication.
+        SummarySnapshot summary = SummaryCache.get();
+        if (summary != null) {
+            QuickLogWidget.updateAll(getApplicationContext(), summary);
+            QuickLogTileService.requestUpdate(getApplicationContext());
+        }
+        return Result.success();
     }
 }
@@ -0,0 +1,102 @@
+package com.example.stopsmoke;
+
+import java.util.TimeZone;
+
+/**
+ * Formats timestamps as "yyyy-MM-dd HH:mm:ss" into a reused character buffer.
+ * The date part is rebuilt only when the local day changes, and the time part is plain
+ * arithmetic, so formatting allocates nothing once the formatter exists.
+ * Not thread-safe: use one instance per thread, e.g. one per adapter.
+ */
+public final class TimestampFormatter {
+
+    /**
+     * Number of characters written by {@link #format(long)}.
+     */
+    public static final int LENGTH = 19;
+
+    // "yyyy-MM-dd " occupies the first 11 characters
+    private static final int TIME_OFFSET = 11;
+
+    private final TimeZone zone;
+    private final char[] buffer = new char[LENGTH];
+    private long cachedDay = Long.MIN_VALUE;
+
+    /**
+     * Creates a formatter for the device's current time zone.
+     */
+    public TimestampFormatter() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * Creates a formatter for a specific time zone.
+     *
+     * @param zone Time zone used to compute the local date and time.
+     */
+    public TimestampFormatter(TimeZone zone) {
+        this.zone = zone;
+        buffer[4] = '-';
+        buffer[7] = '-';
+        buffer[10] = ' ';
+        buffer[13] = ':';
+        buffer[16] = ':';
+    }
+
+    /**
+     * Formats a timestamp into the internal buffer.
+     *
+     * @param timestamp The timestamp in milliseconds.
+     * @return The buffer holding {@link #LENGTH} characters. Overwritten by the next call.
+     */
+    public char[] format(long timestamp) {
+        long localMillis = timestamp + zone.getOffset(timestamp);
+        long day = Math.floorDiv(localMillis, LocalDays.MILLIS_PER_DAY);
+        if (day != cachedDay) {
+            writeDate(day);
+            cachedDay = day;
+        }
+
+        int secondOfDay = (int) (Math.floorMod(localMillis, LocalDays.MILLIS_PER_DAY) / 1000);
+        writeTwoDigits(TIME_OFFSET, secondOfDay / 3600);
+        writeTwoDigits(TIME_OFFSET + 3, (secondOfDay / 60) % 60);
+        writeTwoDigits(TIME_OFFSET + 6, secondOfDay % 60);
+        return buffer;
+    }
+
+    /**
+     * Formats a timestamp into a new String. Allocates; prefer {@link #format(long)} on hot paths.
+     *
+     * @param timestamp The timestamp in milliseconds.
+     * @return A formatted date and time string.
+     */
+    public String formatToString(long timestamp) {
+        return new String(format(timestamp), 0, LENGTH);
+    }
+
+    /**
+     * Writes the "yyyy-MM-dd" prefix for a local epoch day, using the proleptic Gregorian
+     * civil-from-days conversion so no Calendar is needed.
+     */
+    private void writeDate(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthIndex = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+        int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        writeTwoDigits(0, year / 100);
+        writeTwoDigits(2, year % 100);
+        writeTwoDigits(5, month);
+        writeTwoDigits(8, day);
+    }
+
+    private void writeTwoDigits(int offset, int value) {
+        buffer[offset] = (char) ('0' + value / 10);
+        buffer[offset + 1] = (char) ('0' + value % 10);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.stopsmoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CountdownFormatterTest {
+
+    private static String format(CountdownFormatter formatter, long millis) {
+        int length = formatter.format(millis);
+        return new String(formatter.getBuffer(), 0, length);
+    }
+
+    @Test
+    public void format_ShouldRoundSecondsUp() {
+        CountdownFormatter formatter = new CountdownFormatter("Next: ");
+        assertEquals("Next: 01:00", format(formatter, 59001));
+        assertEquals("Next: 00:59", format(formatter, 59000));
+        assertEquals("Next: 00:01", format(formatter, 1));
+        assertEquals("Next: 00:00", format(formatter, 0));
+        assertEquals("Next: 00:00", format(formatter, -5000));
+    }
+
+    @Test
+    public void format_ShouldWidenMinutesBeyondTwoDigits() {
+        CountdownFormatter formatter = new CountdownFormatter("");
+        assertEquals("960:00", format(formatter, 960L * 60 * 1000));
+        assertEquals("05:07", format(formatter, (5 * 60 + 7) * 1000L));
+        // Shorter text after longer text must not leave stale characters behind
+        assertEquals("1000:00", format(formatter, 1000L * 60 * 1000));
+        assertEquals("09:59", format(formatter, (9 * 60 + 59) * 1000L));
+    }
+}
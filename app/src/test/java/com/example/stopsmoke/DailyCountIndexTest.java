@@ -0,0 +1,104 @@
+package com.example.stopsmoke;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DailyCountIndexTest {
+
+    @Test
+    public void sum_ShouldMatchBruteForceWhileGrowingBothWays() {
+        DailyCountIndex index = new DailyCountIndex();
+        int[] expected = new int[2000];
+        long firstDay = 19000; // expected[0] corresponds to this day
+        Random random = new Random(42);
+
+        // Start in the middle so the index has to grow towards both older and newer days
+        for (int i = 0; i < 5000; i++) {
+            int offset = i == 0 ? 1000 : random.nextInt(expected.length);
+            int delta = 1 + random.nextInt(3);
+            expected[offset] += delta;
+            index.add(firstDay + offset, delta);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            int from = random.nextInt(expected.length);
+            int to = from + random.nextInt(expected.length - from);
+            long bruteForce = 0;
+            for (int offset = from; offset <= to; offset++) {
+                bruteForce += expected[offset];
+            }
+            assertEquals(bruteForce, index.sum(firstDay + from, firstDay + to));
+        }
+        assertEquals(expected[123], index.get(firstDay + 123));
+    }
+
+    @Test
+    public void sum_ShouldIgnoreDaysOutsideTheHistory() {
+        DailyCountIndex index = new DailyCountIndex();
+        assertEquals(0, index.sum(0, 100000));
+
+        index.add(500, 3);
+        assertEquals(3, index.sum(-100000, 100000));
+        assertEquals(0, index.sum(501, 100000));
+        assertEquals(0, index.sum(0, 499));
+        assertEquals(0, index.sum(600, 400));
+    }
+
+    @Test
+    public void add_FarFutureDayShouldNotGrowTheDenseRange() {
+        DailyCountIndex index = new DailyCountIndex();
+        long today = 20000;
+        index.add(today, 2);
+
+        // A microsecond timestamp read as milliseconds lands tens of millions of days ahead
+        long farFuture = LocalDays.epochDay(1700000000000000L);
+        index.add(farFuture, 1);
+        index.add(farFuture, 1);
+        index.add(LocalDays.epochDay(9999999999999999L), 1);
+
+        assertEquals(2, index.get(farFuture));
+        assertEquals(2, index.sum(today, today));
+        assertEquals(4, index.sum(today, farFuture));
+        assertEquals(5, index.sum(today, LocalDays.epochDay(9999999999999999L)));
+
+        // Days close to the history still land in the dense range
+        index.add(today + 1, 1);
+        assertEquals(1, index.get(today + 1));
+        assertEquals(3, index.sum(today, today + 1));
+    }
+
+    @Test
+    public void add_VeryOldDayShouldNotGrowTheDenseRange() {
+        DailyCountIndex index = new DailyCountIndex();
+        long today = 20000;
+        index.add(today, 1);
+
+        long veryOld = LocalDays.epochDay(-9999999999999999L);
+        index.add(veryOld, 3);
+        index.add(today - DailyCountIndex.MAX_SPAN_DAYS, 1);
+
+        assertEquals(3, index.get(veryOld));
+        assertEquals(1, index.sum(today - DailyCountIndex.MAX_SPAN_DAYS, today - 1));
+        assertEquals(5, index.sum(veryOld, today));
+        assertEquals(1, index.sum(today, today));
+
+        index.clear();
+        assertEquals(0, index.sum(veryOld, today));
+    }
+
+    @Test
+    public void rollingAverage_ShouldSpreadOverTheWholeWindow() {
+        DailyCountIndex index = new DailyCountIndex();
+        for (int day = 0; day < 30; day++) {
+            index.add(1000 + day, day < 23 ? 1 : 2);
+        }
+        assertEquals(2.0, index.rollingAverage(1029, 7), 1e-9);
+        assertEquals(37 / 30.0, index.rollingAverage(1029, 30), 1e-9);
+
+        index.clear();
+        assertEquals(0.0, index.rollingAverage(1029, 7), 1e-9);
+    }
+}
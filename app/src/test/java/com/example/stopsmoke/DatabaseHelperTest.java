@@ -1,6 +1,8 @@
 package com.example.stopsmoke;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 
 import androidx.test.core.app.ApplicationProvider;
 
@@ -10,6 +12,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
@@ -25,7 +32,7 @@ public class DatabaseHelperTest {
     public void setUp() {
         Context context = ApplicationProvider.getApplicationContext();
         dbHelper = new DatabaseHelper(context);
-        dbHelper.onUpgrade(dbHelper.getWritableDatabase(), 1, 1); // Reset the database before each test
+        dbHelper.deleteAllLogs(); // Reset the database before each test
     }
 
     @After
@@ -59,6 +66,182 @@ public class DatabaseHelperTest {
         assertEquals("Retrieved log should match log2", log2.getTimestamp(), logs.get(0).getTimestamp());
     }
 
+    @Test
+    public void forEachLogBetween_ShouldVisitRowsInOrder() {
+        long currentTime = System.currentTimeMillis();
+        dbHelper.insertLog(new CigaretteLog(currentTime));
+        dbHelper.insertLog(new CigaretteLog(currentTime - 10000));
+        dbHelper.insertLog(new CigaretteLog(currentTime + 10000));
+
+        final List<Long> visited = new ArrayList<>();
+        dbHelper.forEachLogBetween(currentTime - 10000, currentTime, (id, timestamp) -> visited.add(timestamp));
+
+        assertEquals("Should visit 2 logs", 2, visited.size());
+        assertEquals("Should visit oldest first", currentTime - 10000, (long) visited.get(0));
+        assertEquals("Should visit newest last", currentTime, (long) visited.get(1));
+    }
+
+    @Test
+    public void getTimestampsBetween_ShouldReturnPrimitiveColumn() {
+        long currentTime = System.currentTimeMillis();
+        List<CigaretteLog> batch = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            batch.add(new CigaretteLog(currentTime + i));
+        }
+        dbHelper.insertLogs(batch);
+
+        long[] timestamps = dbHelper.getTimestampsBetween(currentTime + 50, currentTime + 149);
+        assertEquals("Should return 100 timestamps", 100, timestamps.length);
+        assertEquals("First timestamp should match range start", currentTime + 50, timestamps[0]);
+        assertEquals("Last timestamp should match range end", currentTime + 149, timestamps[99]);
+    }
+
+    @Test
+    public void getLogPageBefore_ShouldWalkHistoryNewestFirstWithoutGapsOrDuplicates() {
+        long currentTime = System.currentTimeMillis();
+        List<CigaretteLog> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            // Pairs of rows share a timestamp to exercise the id tie-breaker
+            batch.add(new CigaretteLog(currentTime - (i / 2) * 1000L));
+        }
+        dbHelper.insertLogs(batch);
+
+        long beforeTimestamp = Long.MAX_VALUE;
+        int beforeId = Integer.MAX_VALUE;
+        int seen = 0;
+        long previousTimestamp = Long.MAX_VALUE;
+        LogColumns page;
+        do {
+            page = dbHelper.getLogPageBefore(beforeTimestamp, beforeId, 10);
+            for (int i = 0; i < page.size(); i++) {
+                assertTrue("Pages should be ordered newest first", page.getTimestamp(i) <= previousTimestamp);
+                previousTimestamp = page.getTimestamp(i);
+                seen++;
+            }
+            if (page.size() > 0) {
+                beforeTimestamp = page.getTimestamp(page.size() - 1);
+                beforeId = page.getId(page.size() - 1);
+            }
+        } while (page.size() == 10);
+
+        assertEquals("Paging should reach every row exactly once", 25, seen);
+    }
+
+    @Test
+    public void readLogChunkAfter_ShouldStreamHistoryOldestFirstIntoOneBuffer() {
+        long currentTime = System.currentTimeMillis();
+        List<CigaretteLog> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            // Pairs of rows share a timestamp to exercise the id tie-breaker
+            batch.add(new CigaretteLog(currentTime + (i / 2) * 1000L));
+        }
+        dbHelper.insertLogs(batch);
+        assertEquals(25, dbHelper.countLogs());
+
+        LogColumns chunk = new LogColumns(10);
+        long afterTimestamp = Long.MIN_VALUE;
+        int afterId = Integer.MIN_VALUE;
+        int seen = 0;
+        long previousTimestamp = Long.MIN_VALUE;
+        int read;
+        do {
+            read = dbHelper.readLogChunkAfter(afterTimestamp, afterId, 10, chunk);
+            assertEquals("The buffer should only hold the current chunk", read, chunk.size());
+            for (int i = 0; i < read; i++) {
+                assertTrue("Chunks should be ordered oldest first", chunk.getTimestamp(i) >= previousTimestamp);
+                previousTimestamp = chunk.getTimestamp(i);
+                seen++;
+            }
+            if (read > 0) {
+                afterTimestamp = chunk.getTimestamp(read - 1);
+                afterId = chunk.getId(read - 1);
+            }
+        } while (read == 10);
+
+        assertEquals("Streaming should reach every row exactly once", 25, seen);
+    }
+
+    @Test
+    public void replaceAllLogs_ShouldSwapInBackupAndRebuildRollups() throws IOException {
+        long today = getStartOfDay(new Date()) + 12 * 3600 * 1000L;
+        dbHelper.insertLog(new CigaretteLog(today - 30 * 86400 * 1000L));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBackup.Writer writer = new LogBackup.Writer(out);
+        writer.add(today - 1000);
+        writer.add(today);
+        writer.add(today + 1000);
+        writer.finish();
+
+        long restored = dbHelper.replaceAllLogs(LogBackup.Reader.open(ByteBuffer.wrap(out.toByteArray())));
+        assertEquals(3, restored);
+        assertEquals("The old history should be gone", 3, dbHelper.countLogs());
+        assertEquals(3, dbHelper.countCigarettesOn(new Date(today)));
+        long day = LocalDays.epochDay(today);
+        assertEquals("The day index should follow the restored rows", 3, dbHelper.getDailyCountIndex().sum(day - 60, day));
+    }
+
+    @Test
+    public void replaceAllLogs_ShouldKeepArchivedCounts() throws IOException {
+        long now = System.currentTimeMillis();
+        long old = LocalDays.startOfDay(LocalDays.epochDay(now) - 400) + 12 * 3600 * 1000L;
+        long older = old - 7 * 86400 * 1000L;
+        dbHelper.insertLogs(Arrays.asList(new CigaretteLog(older), new CigaretteLog(old),
+                new CigaretteLog(old + 1000), new CigaretteLog(now)));
+
+        // A backup taken before archiving still holds the old rows
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBackup.Writer writer = new LogBackup.Writer(out);
+        writer.add(old);
+        writer.add(old + 1000);
+        writer.add(now);
+        writer.finish();
+
+        dbHelper.archiveLogsBefore(LocalDays.startOfDay(LocalDays.epochDay(now) - 30), 100);
+        assertEquals(3, dbHelper.replaceAllLogs(LogBackup.Reader.open(ByteBuffer.wrap(out.toByteArray()))));
+
+        long oldDay = LocalDays.epochDay(old);
+        long olderDay = LocalDays.epochDay(older);
+        assertEquals("Rows of an archived day should not be counted twice",
+                2, dbHelper.getProgressStats(oldDay, oldDay).getTotal());
+        assertEquals("Archived days missing from the backup should keep their counts",
+                1, dbHelper.getProgressStats(olderDay, olderDay).getTotal());
+        assertEquals(1, dbHelper.countCigarettesOn(new Date(now)));
+        assertEquals(3, dbHelper.countLogs());
+        HistoryAnalytics analytics = dbHelper.getHistoryAnalytics();
+        int heatmap = 0;
+        for (int slot = 0; slot < LocalDays.HOURS_PER_WEEK; slot++) {
+            heatmap += analytics.getHeatmapCount(slot / 24, slot % 24);
+        }
+        assertEquals("Every cigarette should be in the heatmap exactly once", 4, heatmap);
+    }
+
+    @Test
+    public void archiveLogsBefore_ShouldDropRawRowsButKeepRollups() {
+        long now = System.currentTimeMillis();
+        // Noon, so the rows cannot straddle midnight
+        long old = LocalDays.startOfDay(LocalDays.epochDay(now) - 400) + 12 * 3600 * 1000L;
+        List<CigaretteLog> batch = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            batch.add(new CigaretteLog(old + i * 1000L));
+        }
+        batch.add(new CigaretteLog(now));
+        dbHelper.insertLogs(batch);
+
+        long oldDay = LocalDays.epochDay(old);
+        long cutoff = LocalDays.startOfDay(LocalDays.epochDay(now) - 30);
+        assertEquals("A full chunk should be removed", 10, dbHelper.archiveLogsBefore(cutoff, 10));
+        assertEquals(10, dbHelper.archiveLogsBefore(cutoff, 10));
+        assertEquals("The last chunk should be partial", 5, dbHelper.archiveLogsBefore(cutoff, 10));
+        assertEquals(0, dbHelper.archiveLogsBefore(cutoff, 10));
+
+        assertEquals("Only recent raw rows should remain", 1, dbHelper.countLogs());
+        ProgressStats stats = dbHelper.getProgressStats(oldDay, oldDay);
+        assertEquals("Archived counts should survive in the rollups", 25, stats.getTotal());
+        assertEquals(25, dbHelper.getHistoryAnalytics().getMonths().countFor(LocalDays.epochMonth(oldDay)));
+        assertTrue(dbHelper.reclaimFreePages(100) >= 0);
+    }
+
     @Test
     public void countCigarettesOn_ShouldReturnCorrectCount() {
         // Today's date
@@ -98,6 +281,153 @@ public class DatabaseHelperTest {
         assertTrue("Logs should be empty after deletion", logs.isEmpty());
     }
 
+    @Test
+    public void insertLogs_ShouldInsertAllRows() {
+        long now = System.currentTimeMillis();
+        List<CigaretteLog> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new CigaretteLog(now - i * 1000L));
+        }
+
+        int inserted = dbHelper.insertLogs(batch);
+        assertEquals("Should insert every row", 100, inserted);
+        assertEquals("Should read back every row", 100, dbHelper.getLogsBetween(0, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    public void insertLogs_ShouldInsertNothingWhenOneRowFails() {
+        long startOfDay = getStartOfDay(new Date());
+        long rejected = startOfDay + 2000;
+        // Make the database refuse one row in the middle of the batch
+        dbHelper.getWritableDatabase().execSQL("CREATE TEMP TRIGGER reject_log BEFORE INSERT ON cigarette_logs"
+                + " WHEN NEW.timestamp = " + rejected + " BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+
+        List<CigaretteLog> batch = new ArrayList<>();
+        batch.add(new CigaretteLog(startOfDay + 1000));
+        batch.add(new CigaretteLog(rejected));
+        batch.add(new CigaretteLog(startOfDay + 3000));
+        try {
+            dbHelper.insertLogs(batch);
+            fail("The rejected row should fail the batch");
+        } catch (RuntimeException expected) {
+            // The batch is rolled back as a whole
+        } finally {
+            dbHelper.getWritableDatabase().execSQL("DROP TRIGGER reject_log");
+        }
+
+        assertEquals("No row should be kept", 0, dbHelper.getLogsBetween(0, Long.MAX_VALUE).size());
+        assertEquals("No daily count should be kept", 0, dbHelper.countCigarettesOn(new Date(startOfDay)));
+    }
+
+    @Test
+    public void dailyCounts_ShouldTrackBatchInsertsAndDeletion() {
+        long startOfDay = getStartOfDay(new Date());
+        List<CigaretteLog> batch = new ArrayList<>();
+        batch.add(new CigaretteLog(startOfDay + 1000));
+        batch.add(new CigaretteLog(startOfDay + 2000));
+        batch.add(new CigaretteLog(startOfDay - 1000)); // Yesterday, 23:59:59
+        dbHelper.insertLogs(batch);
+
+        assertEquals("Should count 2 cigarettes today", 2, dbHelper.countCigarettesOn(new Date(startOfDay)));
+        assertEquals("Should count 1 cigarette yesterday", 1, dbHelper.countCigarettesOn(new Date(startOfDay - 1000)));
+
+        dbHelper.deleteAllLogs();
+        assertEquals("Daily count should reset after deletion", 0, dbHelper.countCigarettesOn(new Date(startOfDay)));
+    }
+
+    @Test
+    public void getProgressStats_ShouldBucketCountsByWeek() {
+        long today = LocalDays.epochDay(System.currentTimeMillis());
+        long startDay = today - 13;
+        List<CigaretteLog> batch = new ArrayList<>();
+        batch.add(new CigaretteLog(LocalDays.startOfDay(startDay) + 1000));
+        batch.add(new CigaretteLog(LocalDays.startOfDay(startDay) + 2000));
+        batch.add(new CigaretteLog(LocalDays.startOfDay(startDay + 3) + 1000));
+        batch.add(new CigaretteLog(LocalDays.startOfDay(today) + 1000));
+        batch.add(new CigaretteLog(LocalDays.startOfDay(startDay - 1) + 1000)); // Outside the range
+        dbHelper.insertLogs(batch);
+
+        ProgressStats stats = dbHelper.getProgressStats(startDay, today);
+        assertEquals("Two weeks should be covered", 2, stats.getWeekCount());
+        assertEquals("First week should hold 3 cigarettes", 3, stats.getWeeklyCount(0));
+        assertEquals("Second week should hold 1 cigarette", 1, stats.getWeeklyCount(1));
+        assertEquals("Total should exclude days outside the range", 4, stats.getTotal());
+        assertEquals("Three days should have cigarettes", 3, stats.getDaysSmoked());
+        assertEquals("Peak day should hold 2 cigarettes", 2, stats.getPeakDailyCount());
+    }
+
+    @Test
+    public void getHistoryAnalytics_ShouldTrackInsertsIncrementally() {
+        long day = LocalDays.epochDay(System.currentTimeMillis());
+        long eightAm = LocalDays.startOfDay(day) + 8 * LocalDays.MILLIS_PER_HOUR;
+        dbHelper.insertLog(new CigaretteLog(eightAm));
+        List<CigaretteLog> batch = new ArrayList<>();
+        batch.add(new CigaretteLog(eightAm + 60000));
+        batch.add(new CigaretteLog(LocalDays.startOfDay(day - 400) + 1000)); // More than a year ago
+        dbHelper.insertLogs(batch);
+
+        HistoryAnalytics analytics = dbHelper.getHistoryAnalytics();
+        long month = LocalDays.epochMonth(day);
+        assertEquals("Week should hold 2 cigarettes", 2, analytics.getWeeks().countFor(LocalDays.epochWeek(day)));
+        assertEquals("Month should hold 2 cigarettes", 2, analytics.getMonths().countFor(month));
+        assertEquals("Year should hold 2 cigarettes", 2, analytics.getYears().countFor(Math.floorDiv(month, 12L)));
+        assertEquals("Two distinct years should be present", 2, analytics.getYears().size());
+        assertEquals("Busiest hour should be 8 AM today", LocalDays.hourOfWeek(eightAm), analytics.getPeakHourOfWeek());
+
+        dbHelper.deleteAllLogs();
+        analytics = dbHelper.getHistoryAnalytics();
+        assertEquals("Rollups should be empty after deletion", 0, analytics.getYears().size());
+        assertEquals("Heatmap should be empty after deletion", -1, analytics.getPeakHourOfWeek());
+    }
+
+    @Test
+    public void getDailyCountIndex_ShouldFollowInsertsAndDeletion() {
+        long today = LocalDays.epochDay(System.currentTimeMillis());
+        dbHelper.insertLog(new CigaretteLog(LocalDays.startOfDay(today - 10) + 1000));
+
+        // Built from the rollup, then kept current by later writes
+        DailyCountIndex index = dbHelper.getDailyCountIndex();
+        assertEquals(1, index.sum(today - 30, today));
+
+        dbHelper.insertLog(new CigaretteLog(LocalDays.startOfDay(today) + 1000));
+        List<CigaretteLog> batch = new ArrayList<>();
+        batch.add(new CigaretteLog(LocalDays.startOfDay(today - 3) + 1000));
+        batch.add(new CigaretteLog(LocalDays.startOfDay(today - 3) + 2000));
+        dbHelper.insertLogs(batch);
+        assertEquals("Index should match the daily rollup", 3, index.sum(today - 6, today));
+        assertEquals(4, index.sum(today - 30, today));
+
+        dbHelper.deleteAllLogs();
+        assertEquals("Index should be empty after deletion", 0, index.sum(today - 30, today));
+    }
+
+    @Test
+    public void onUpgrade_ShouldKeepExistingLogs() {
+        dbHelper.insertLog(new CigaretteLog(System.currentTimeMillis()));
+        dbHelper.insertLog(new CigaretteLog(System.currentTimeMillis()));
+
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        dbHelper.onUpgrade(db, 1, db.getVersion());
+
+        List<CigaretteLog> logs = dbHelper.getLogsBetween(0, Long.MAX_VALUE);
+        assertEquals("Upgrade should not drop existing logs", 2, logs.size());
+        assertEquals("Upgrade should rebuild daily counts", 2, dbHelper.countCigarettesOn(new Date()));
+    }
+
+    @Test
+    public void onCreate_ShouldIndexTimestampColumn() {
+        Cursor cursor = dbHelper.getReadableDatabase().rawQuery(
+                "SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'cigarette_logs'", null);
+        boolean found = false;
+        while (cursor.moveToNext()) {
+            if ("idx_cigarette_logs_timestamp".equals(cursor.getString(0))) {
+                found = true;
+            }
+        }
+        cursor.close();
+        assertTrue("Timestamp index should exist", found);
+    }
+
     /**
      * Helper method to get the start of the day in milliseconds.
      */
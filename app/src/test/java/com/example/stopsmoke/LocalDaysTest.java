@@ -0,0 +1,48 @@
+package com.example.stopsmoke;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class LocalDaysTest {
+
+    @Test
+    public void epochMonth_ShouldMatchCalendar() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        // Covers leap years, century rules and days before the epoch
+        for (long day = -40000; day < 40000; day += 13) {
+            calendar.setTimeInMillis(day * LocalDays.MILLIS_PER_DAY);
+            long expected = calendar.get(Calendar.YEAR) * 12L + calendar.get(Calendar.MONTH);
+            assertEquals("Epoch day " + day, expected, LocalDays.epochMonth(day));
+        }
+    }
+
+    @Test
+    public void epochWeek_ShouldStartOnMonday() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        for (long week = -100; week < 100; week++) {
+            long monday = LocalDays.startOfWeek(week);
+            calendar.setTimeInMillis(monday * LocalDays.MILLIS_PER_DAY);
+            assertEquals(Calendar.MONDAY, calendar.get(Calendar.DAY_OF_WEEK));
+            assertEquals(week, LocalDays.epochWeek(monday));
+            assertEquals(week, LocalDays.epochWeek(monday + 6));
+        }
+    }
+
+    @Test
+    public void hourOfWeek_ShouldCountFromMondayMidnight() {
+        TimeZone original = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        try {
+            long monday = LocalDays.startOfWeek(2800) * LocalDays.MILLIS_PER_DAY;
+            assertEquals(0, LocalDays.hourOfWeek(monday));
+            assertEquals(8, LocalDays.hourOfWeek(monday + 8 * LocalDays.MILLIS_PER_HOUR + 59 * 60000));
+            assertEquals(LocalDays.HOURS_PER_WEEK - 1, LocalDays.hourOfWeek(monday + 7 * LocalDays.MILLIS_PER_DAY - 1));
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.stopsmoke;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LogBackupTest {
+
+    @Test
+    public void backup_ShouldRoundTripAcrossBlocks() throws IOException {
+        for (int rows : new int[]{0, 1, LogBackup.ROWS_PER_BLOCK, LogBackup.ROWS_PER_BLOCK * 3 + 17}) {
+            long[] timestamps = history(rows);
+            long[] restored = restore(ByteBuffer.wrap(backup(timestamps)));
+            assertArrayEquals("Round trip of " + rows + " rows", timestamps, restored);
+        }
+
+        // Unsorted input and extreme values still round-trip, just less compactly
+        long[] odd = {Long.MAX_VALUE, Long.MIN_VALUE, 0, -1, 42, 42};
+        assertArrayEquals(odd, restore(ByteBuffer.wrap(backup(odd))));
+    }
+
+    @Test
+    public void backup_ShouldBeSmallAndRestoreFromAMappedFile() throws IOException {
+        // Five years of ten cigarettes a day
+        long[] timestamps = history(5 * 365 * 10);
+        byte[] bytes = backup(timestamps);
+        assertTrue("Backup should average under 5 bytes per row, was " + bytes.length,
+                bytes.length < timestamps.length * 5);
+
+        File file = File.createTempFile("backup", ".ssbk");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(bytes);
+            }
+            try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+                ByteBuffer mapped = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+                assertArrayEquals(timestamps, restore(mapped));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void open_ShouldRejectEveryCorruptedByte() throws IOException {
+        byte[] bytes = backup(history(LogBackup.ROWS_PER_BLOCK + 100));
+
+        // Flip one bit at a time across the whole file: every change must be detected
+        for (int i = 0; i < bytes.length; i += 7) {
+            byte[] damaged = bytes.clone();
+            damaged[i] ^= 0x10;
+            try {
+                restore(ByteBuffer.wrap(damaged));
+                fail("Corruption at byte " + i + " of " + bytes.length + " was not detected");
+            } catch (IOException expected) {
+                // Rejected before any row was handed out
+            }
+        }
+    }
+
+    @Test
+    public void open_ShouldRejectTruncatedFiles() throws IOException {
+        byte[] bytes = backup(history(500));
+        for (int length : new int[]{0, 4, bytes.length / 2, bytes.length - 1}) {
+            try {
+                LogBackup.Reader.open(ByteBuffer.wrap(Arrays.copyOf(bytes, length)));
+                fail("Truncation to " + length + " bytes was not detected");
+            } catch (IOException expected) {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * Ascending timestamps spaced minutes to hours apart, with the odd duplicate.
+     */
+    private static long[] history(int rows) {
+        Random random = new Random(rows);
+        long[] timestamps = new long[rows];
+        long timestamp = 1_600_000_000_000L;
+        for (int i = 0; i < rows; i++) {
+            timestamp += random.nextInt(20) == 0 ? 0 : 60_000L + random.nextInt(4 * 3_600_000);
+            timestamps[i] = timestamp;
+        }
+        return timestamps;
+    }
+
+    private static byte[] backup(long[] timestamps) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBackup.Writer writer = new LogBackup.Writer(out);
+        for (long timestamp : timestamps) {
+            writer.add(timestamp);
+        }
+        assertEquals(timestamps.length, writer.finish());
+        return out.toByteArray();
+    }
+
+    private static long[] restore(ByteBuffer buffer) throws IOException {
+        LogBackup.Reader reader = LogBackup.Reader.open(buffer);
+        final long[] restored = new long[(int) reader.getRowCount()];
+        final int[] size = new int[1];
+        reader.forEachBlock((timestamps, count) -> {
+            System.arraycopy(timestamps, 0, restored, size[0], count);
+            size[0] += count;
+        });
+        assertEquals(restored.length, size[0]);
+        return restored;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.stopsmoke;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LogTransferTest {
+
+    private static final long[] TIMESTAMPS = {0L, 1714141800000L, 1714141860000L, -5L};
+
+    @Test
+    public void export_ShouldRoundTripInBothFormats() throws IOException {
+        for (LogTransfer.Format format : LogTransfer.Format.values()) {
+            StringWriter out = new StringWriter();
+            LogTransfer.Encoder encoder = new LogTransfer.Encoder(out, format);
+            encoder.begin();
+            for (int i = 0; i < TIMESTAMPS.length; i++) {
+                encoder.write(i + 1, TIMESTAMPS[i]);
+            }
+            encoder.end();
+
+            List<Long> parsed = parse(new StringReader(out.toString()));
+            assertEquals(format + " row count", TIMESTAMPS.length, parsed.size());
+            for (int i = 0; i < TIMESTAMPS.length; i++) {
+                assertEquals(format + " row " + i, TIMESTAMPS[i], (long) parsed.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void parse_ShouldAcceptHandEditedFiles() throws IOException {
+        // Header picks the column, blank lines and CRLF are tolerated
+        assertEquals(listOf(5L, 6L), parse(new StringReader("time, Timestamp ,note\r\nx,5,a\r\n\r\ny, 6 ,b")));
+        // Without a header the first column is used
+        assertEquals(listOf(7L, 8L), parse(new StringReader("7\n8\n")));
+        // JSON member order and extra members do not matter
+        assertEquals(listOf(9L), parse(new StringReader("{\"logs\": [{\"note\": \"a\\\"b\", \"timestamp\" : 9, \"id\": 3}]}")));
+        assertEquals(listOf(), parse(new StringReader("")));
+    }
+
+    @Test
+    public void parse_ShouldRejectMalformedRows() {
+        String[] inputs = {"timestamp\n12x\n", "id,timestamp\n1,\n", "note\na\n", "[{\"timestamp\": }]"};
+        for (String input : inputs) {
+            try {
+                parse(new StringReader(input));
+                fail("Expected an error for " + input);
+            } catch (IOException expected) {
+                // Malformed input is reported, not skipped
+            }
+        }
+    }
+
+    @Test
+    public void parse_ShouldRejectTimestampsOutsideTheRange() throws IOException {
+        long max = 1714141800000L + 86_400_000L;
+        List<Long> accepted = new ArrayList<>();
+        assertEquals(2, LogTransfer.parse(new StringReader("timestamp\n946684800000\n" + max + "\n"),
+                LogTransfer.MIN_TIMESTAMP, max, accepted::add));
+        assertEquals(listOf(946684800000L, max), accepted);
+
+        // Seconds, microseconds and garbage far in the future
+        String[] inputs = {"timestamp\n1714141800\n", "timestamp\n1700000000000000\n",
+                "[{\"timestamp\": 9999999999999999}]", "timestamp\n" + (max + 1) + "\n"};
+        for (String input : inputs) {
+            List<Long> received = new ArrayList<>();
+            try {
+                LogTransfer.parse(new StringReader(input), LogTransfer.MIN_TIMESTAMP, max, received::add);
+                fail("Expected an error for " + input);
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("row 1"));
+            }
+            assertTrue("Nothing should reach the sink", received.isEmpty());
+        }
+    }
+
+    @Test
+    public void parse_ShouldStreamLargeInputs() throws IOException {
+        // A generated file the parser can only handle incrementally if it never buffers it
+        final int rows = 1_000_000;
+        Reader generated = new Reader() {
+            private final char[] row = "1714141800000\n".toCharArray();
+            private long position = -"timestamp\n".length();
+
+            @Override
+            public int read(char[] buffer, int offset, int length) {
+                if (position >= (long) rows * row.length) {
+                    return -1;
+                }
+                int count = 0;
+                while (count < length && position < (long) rows * row.length) {
+                    buffer[offset + count++] = position < 0
+                            ? "timestamp\n".charAt((int) (position + "timestamp\n".length()))
+                            : row[(int) (position % row.length)];
+                    position++;
+                }
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        final long[] sum = new long[1];
+        long count = LogTransfer.parse(new BufferedReader(generated), timestamp -> sum[0] += timestamp);
+        assertEquals(rows, count);
+        assertEquals(1714141800000L * rows, sum[0]);
+    }
+
+    private static List<Long> parse(Reader reader) throws IOException {
+        List<Long> timestamps = new ArrayList<>();
+        LogTransfer.parse(reader, timestamps::add);
+        return timestamps;
+    }
+
+    private static List<Long> listOf(Long... values) {
+        List<Long> list = new ArrayList<>();
+        for (Long value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
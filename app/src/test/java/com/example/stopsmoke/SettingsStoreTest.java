@@ -0,0 +1,112 @@
+package com.example.stopsmoke;
+
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(application = Application.class) // StopSmokeApplication would load the settings in the background
+public class SettingsStoreTest {
+
+    private Context context;
+    private SharedPreferences prefs;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        prefs = context.getSharedPreferences("StopSmokePrefs", Context.MODE_PRIVATE);
+        prefs.edit().clear().commit();
+        SettingsStore.clear();
+    }
+
+    @After
+    public void tearDown() {
+        SettingsStore.clear();
+    }
+
+    @Test
+    public void ensureLoaded_ShouldUseDefaultsAndStartPlanToday() {
+        Settings settings = SettingsStore.ensureLoaded(context);
+
+        assertEquals(Settings.DEFAULT_ALLOWED_CIGS, settings.getAllowedCigarettes());
+        assertEquals(SlotPlanner.DEFAULT_WAKE_MINUTE, settings.getWakeMinute());
+        assertEquals(RetentionWorker.DEFAULT_RETENTION_MONTHS, settings.getRetentionMonths());
+        assertEquals(0, settings.getNextCigaretteTime());
+
+        long today = LocalDays.epochDay(System.currentTimeMillis());
+        assertEquals(today, settings.getPlanStartDay());
+        assertEquals("The start day should be persisted", today, prefs.getLong("planStartDay", -1));
+        assertSame("Later reads should be served from memory", settings, SettingsStore.get());
+    }
+
+    @Test
+    public void ensureLoaded_ShouldReadExistingPreferences() {
+        prefs.edit().putInt("allowedCigarettes", 12).putInt("reductionRate", 3).putLong("planStartDay", 100)
+                .putInt("retentionMonths", 0).putLong("nextCigaretteTime", 5000L).commit();
+
+        Settings settings = SettingsStore.ensureLoaded(context);
+
+        assertEquals(12, settings.getAllowedCigarettes());
+        assertEquals(3, settings.getReductionRate());
+        assertEquals(100, settings.getPlanStartDay());
+        assertEquals(0, settings.getRetentionMonths());
+        assertEquals(5000L, settings.getNextCigaretteTime());
+    }
+
+    @Test
+    public void update_ShouldPersistChangedFieldsAndNotifyListeners() {
+        SettingsStore.ensureLoaded(context);
+        List<Settings> changes = new ArrayList<>();
+        SettingsStore.Listener listener = changes::add;
+        SettingsStore.addListener(listener);
+        try {
+            Settings updated = SettingsStore.update(settings -> settings.withPlan(15, 2, 42).withWindow(480, 1320));
+
+            assertEquals(15, prefs.getInt("allowedCigarettes", 0));
+            assertEquals(2, prefs.getInt("reductionRate", 0));
+            assertEquals(42, prefs.getLong("planStartDay", 0));
+            assertEquals(480, prefs.getInt("wakeMinute", 0));
+            assertEquals(1320, prefs.getInt("sleepMinute", 0));
+            assertSame(updated, SettingsStore.get());
+            assertEquals("One change, one notification", 1, changes.size());
+            assertSame(updated, changes.get(0));
+
+            // An update that changes nothing writes and notifies nothing
+            SettingsStore.update(settings -> settings.withWindow(480, 1320));
+            assertEquals(1, changes.size());
+        } finally {
+            SettingsStore.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void update_StoppedTimerShouldRemoveItsKeys() {
+        SettingsStore.ensureLoaded(context);
+        SettingsStore.update(settings -> settings.withTimer(1000L, 2000L));
+        assertEquals(2000L, prefs.getLong("nextCigaretteTime", 0));
+
+        SettingsStore.update(settings -> settings.withTimer(0, 0));
+
+        assertFalse(prefs.contains("lastCigaretteTime"));
+        assertFalse(prefs.contains("nextCigaretteTime"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void update_BeforeLoadShouldFail() {
+        SettingsStore.update(settings -> settings.withRetentionMonths(6));
+    }
+}
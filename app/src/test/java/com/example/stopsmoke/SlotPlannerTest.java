@@ -0,0 +1,80 @@
+package com.example.stopsmoke;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class SlotPlannerTest {
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final int WAKE = 7 * 60;
+    private static final int SLEEP = 23 * 60;
+
+    private TimeZone originalZone;
+    private SlotPlanner planner;
+    private long midnight;
+
+    @Before
+    public void setUp() {
+        originalZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        planner = new SlotPlanner();
+        midnight = LocalDays.startOfDay(20000);
+    }
+
+    @After
+    public void tearDown() {
+        TimeZone.setDefault(originalZone);
+    }
+
+    @Test
+    public void nextAllowedTime_ShouldSnapToTheNextSlot() {
+        // 20 cigarettes over 16 hours: one slot every 48 minutes from 07:00
+        long wake = midnight + WAKE * MINUTE;
+        assertEquals(wake + 48 * MINUTE, planner.nextAllowedTime(wake, 1, 20, WAKE, SLEEP));
+        assertEquals(wake + 96 * MINUTE, planner.nextAllowedTime(wake + 48 * MINUTE, 2, 20, WAKE, SLEEP));
+    }
+
+    @Test
+    public void nextAllowedTime_ShouldKeepAtLeastOneIntervalAfterTheLog() {
+        long wake = midnight + WAKE * MINUTE;
+        // Just before the 07:48 slot: that slot is too close, so the next one is 08:36
+        assertEquals(wake + 96 * MINUTE, planner.nextAllowedTime(wake + 47 * MINUTE, 1, 20, WAKE, SLEEP));
+        assertEquals(wake + 96 * MINUTE, planner.nextAllowedTime(wake + 5 * MINUTE, 1, 20, WAKE, SLEEP));
+        for (long log = wake; log < wake + 10 * 48 * MINUTE; log += 7 * MINUTE + 1) {
+            assertTrue(planner.nextAllowedTime(log, 1, 20, WAKE, SLEEP) - log >= 48 * MINUTE);
+        }
+    }
+
+    @Test
+    public void nextAllowedTime_ShouldMoveToTomorrowOutsideTheWindowOrAllowance() {
+        long tomorrowWake = midnight + 24 * 60 * MINUTE + WAKE * MINUTE;
+        // Before waking up, the first slot is today's wake time
+        assertEquals(midnight + WAKE * MINUTE, planner.nextAllowedTime(midnight + 60 * MINUTE, 1, 20, WAKE, SLEEP));
+        // In the last slot of the day
+        assertEquals(tomorrowWake, planner.nextAllowedTime(midnight + SLEEP * MINUTE - MINUTE, 5, 20, WAKE, SLEEP));
+        // Allowance used up
+        assertEquals(tomorrowWake, planner.nextAllowedTime(midnight + 8 * 60 * MINUTE, 20, 20, WAKE, SLEEP));
+    }
+
+    @Test
+    public void slotsRemaining_ShouldCountFutureSlotsCappedByAllowance() {
+        long wake = midnight + WAKE * MINUTE;
+        assertEquals(20, planner.slotsRemaining(midnight, 0, 20, WAKE, SLEEP));
+        assertEquals(10, planner.slotsRemaining(wake + 10 * 48 * MINUTE, 0, 20, WAKE, SLEEP));
+        assertEquals(9, planner.slotsRemaining(wake + 10 * 48 * MINUTE - 1, 11, 20, WAKE, SLEEP));
+        assertEquals(0, planner.slotsRemaining(midnight + SLEEP * MINUTE + 1, 0, 20, WAKE, SLEEP));
+    }
+
+    @Test
+    public void planFor_ShouldReuseThePlanUntilAnInputChanges() {
+        SlotPlanner.DayPlan plan = planner.planFor(20000, 20, WAKE, SLEEP);
+        assertSame(plan, planner.planFor(20000, 20, WAKE, SLEEP));
+        assertNotSame(plan, planner.planFor(20000, 19, WAKE, SLEEP));
+        assertEquals(16 * 60 * MINUTE / 19, planner.planFor(20000, 19, WAKE, SLEEP).interval);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.stopsmoke;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TaperPlanTest {
+
+    private static final long START = 20000;
+
+    private final TaperPlan plan = new TaperPlan();
+
+    @Test
+    public void allowanceOn_ShouldDropEachPlanWeek() {
+        assertEquals(20, plan.allowanceOn(START - 3, 20, 2, START));
+        assertEquals(20, plan.allowanceOn(START, 20, 2, START));
+        assertEquals(20, plan.allowanceOn(START + 6, 20, 2, START));
+        assertEquals(18, plan.allowanceOn(START + 7, 20, 2, START));
+        assertEquals(0, plan.allowanceOn(START + 7 * 30, 20, 2, START));
+
+        // A changed plan must not be answered from the cached day
+        assertEquals(19, plan.allowanceOn(START + 7, 20, 1, START));
+    }
+
+    @Test
+    public void allowedBetween_ShouldMatchSummingEveryDay() {
+        int[][] plans = {{20, 1}, {20, 3}, {5, 2}, {7, 0}, {1, 1}};
+        long[][] ranges = {{START, START}, {START, START + 27}, {START - 10, START + 3},
+                {START + 3, START + 60}, {START - 5, START - 1}, {START + 100, START + 200}};
+
+        for (int[] p : plans) {
+            for (long[] range : ranges) {
+                long expected = 0;
+                for (long day = range[0]; day <= range[1]; day++) {
+                    expected += plan.allowanceOn(day, p[0], p[1], START);
+                }
+                assertEquals("plan " + p[0] + "/" + p[1] + " over " + range[0] + ".." + range[1],
+                        expected, plan.allowedBetween(range[0], range[1], p[0], p[1], START));
+            }
+        }
+        assertEquals(0, plan.allowedBetween(START + 1, START, 20, 1, START));
+    }
+}
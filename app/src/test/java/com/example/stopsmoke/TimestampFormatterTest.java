@@ -0,0 +1,36 @@
+package com.example.stopsmoke;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class TimestampFormatterTest {
+
+    private static final long MINUTE = 60 * 1000L;
+
+    @Test
+    public void format_ShouldMatchSimpleDateFormatAcrossDstChanges() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/Berlin");
+        TimestampFormatter formatter = new TimestampFormatter(zone);
+        SimpleDateFormat reference = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        reference.setTimeZone(zone);
+
+        // 2024-03-30 to 2024-04-01 covers the spring-forward change, plus a leap day earlier in the year
+        long start = 1711756800000L;
+        for (long timestamp = start; timestamp < start + 3 * 24 * 60 * MINUTE; timestamp += 7 * MINUTE + 13) {
+            assertEquals(reference.format(new Date(timestamp)), formatter.formatToString(timestamp));
+        }
+        assertEquals("2024-02-29 12:00:00", formatter.formatToString(1709204400000L));
+    }
+
+    @Test
+    public void format_ShouldHandleTimestampsBeforeEpoch() {
+        TimestampFormatter formatter = new TimestampFormatter(TimeZone.getTimeZone("UTC"));
+        assertEquals("1969-12-31 23:59:59", formatter.formatToString(-1000));
+    }
+}
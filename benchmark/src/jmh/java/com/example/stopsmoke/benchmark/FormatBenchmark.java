@@ -0,0 +1,62 @@
+package com.example.stopsmoke.benchmark;
+
+import com.example.stopsmoke.CountdownFormatter;
+import com.example.stopsmoke.TimestampFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the text formatting done on every list bind and every countdown tick.
+ * Run with the gc profiler (enabled in build.gradle) and check gc.alloc.rate.norm:
+ * formatTimestampReusedBuffer and formatCountdownReusedBuffer must report 0 B/op.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FormatBenchmark {
+
+    private long timestamp = System.currentTimeMillis();
+    private long remainingMillis = 42L * 60 * 1000;
+
+    private final TimestampFormatter formatter = new TimestampFormatter();
+    private final CountdownFormatter countdownFormatter = new CountdownFormatter("Next cigarette available in: ");
+
+    @Benchmark
+    public String formatTimestampSimpleDateFormat() {
+        // Baseline: the previous bind path, a new SimpleDateFormat and Date per row.
+        // Step one minute per call, like scrolling through a list of logs
+        timestamp -= 60000;
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault()).format(new Date(timestamp));
+    }
+
+    @Benchmark
+    public char[] formatTimestampReusedBuffer() {
+        timestamp -= 60000;
+        return formatter.format(timestamp);
+    }
+
+    @Benchmark
+    public String formatCountdownStringFormat() {
+        // Baseline: the previous per-tick path, String.format plus concatenation
+        remainingMillis = remainingMillis <= 0 ? 42L * 60 * 1000 : remainingMillis - 1000;
+        long minutes = (remainingMillis / 1000) / 60;
+        long seconds = (remainingMillis / 1000) % 60;
+        return "Next cigarette available in: " + String.format(Locale.getDefault(), "%02d:%02d", minutes, seconds);
+    }
+
+    @Benchmark
+    public int formatCountdownReusedBuffer() {
+        remainingMillis = remainingMillis <= 0 ? 42L * 60 * 1000 : remainingMillis - 1000;
+        return countdownFormatter.format(remainingMillis);
+    }
+}
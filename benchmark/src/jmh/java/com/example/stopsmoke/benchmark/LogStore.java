@@ -0,0 +1,243 @@
+package com.example.stopsmoke.benchmark;
+
+import com.example.stopsmoke.LocalDays;
+import com.example.stopsmoke.LogSchema;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC counterpart of DatabaseHelper, so the storage layer can be measured on the JVM.
+ * The schema and hot-path statements come from {@link LogSchema}, the same constants
+ * DatabaseHelper runs, so the two cannot drift apart; only the Java around them is mirrored.
+ */
+final class LogStore implements AutoCloseable {
+
+    // Spacing between generated rows: 10 minutes
+    static final long ROW_SPACING_MILLIS = 10L * 60 * 1000;
+
+    private static final int PERIOD_WEEK = LogSchema.PERIOD_WEEK;
+    private static final int PERIOD_MONTH = LogSchema.PERIOD_MONTH;
+    private static final int PERIOD_YEAR = LogSchema.PERIOD_YEAR;
+
+    private final File file;
+    private final Connection connection;
+    private final PreparedStatement insertLog;
+    private final PreparedStatement ensureDay;
+    private final PreparedStatement bumpDay;
+    private final PreparedStatement ensurePeriod;
+    private final PreparedStatement bumpPeriod;
+    private final PreparedStatement ensureSlot;
+    private final PreparedStatement bumpSlot;
+    private final PreparedStatement selectBetween;
+    private final PreparedStatement selectDay;
+    private final PreparedStatement sumDays;
+
+    /**
+     * Receives daily rollup rows.
+     */
+    interface DailyCountVisitor {
+        void visit(long day, int count);
+    }
+
+    LogStore() throws IOException, SQLException {
+        file = File.createTempFile("stopsmoke-bench", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            // Same pragma order as DatabaseHelper.onConfigure, then every migration's DDL
+            statement.execute("PRAGMA auto_vacuum = INCREMENTAL");
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute(LogSchema.CREATE_LOGS_TABLE);
+            statement.execute(LogSchema.CREATE_TIMESTAMP_INDEX);
+            statement.execute(LogSchema.CREATE_DAILY_COUNTS);
+            statement.execute(LogSchema.CREATE_PERIOD_COUNTS);
+            statement.execute(LogSchema.CREATE_HOUR_COUNTS);
+        }
+        insertLog = connection.prepareStatement(LogSchema.INSERT_LOG);
+        ensureDay = connection.prepareStatement(LogSchema.ENSURE_DAY);
+        bumpDay = connection.prepareStatement(LogSchema.ADD_TO_DAY);
+        ensurePeriod = connection.prepareStatement(LogSchema.ENSURE_PERIOD);
+        bumpPeriod = connection.prepareStatement(LogSchema.ADD_TO_PERIOD);
+        ensureSlot = connection.prepareStatement(LogSchema.ENSURE_SLOT);
+        bumpSlot = connection.prepareStatement(LogSchema.ADD_TO_SLOT);
+        selectBetween = connection.prepareStatement(LogSchema.SELECT_LOGS_BETWEEN);
+        selectDay = connection.prepareStatement(LogSchema.SELECT_DAY_COUNT);
+        sumDays = connection.prepareStatement("SELECT SUM(" + LogSchema.COLUMN_COUNT + ") FROM "
+                + LogSchema.TABLE_DAILY_COUNTS + " WHERE " + LogSchema.COLUMN_DAY + " BETWEEN ? AND ?");
+    }
+
+    /**
+     * Bulk-loads rows spaced {@link #ROW_SPACING_MILLIS} apart, ending at {@code newest},
+     * together with their rollups.
+     */
+    void populate(int rows, long newest) throws SQLException {
+        Rollups rollups = new Rollups();
+        connection.setAutoCommit(false);
+        for (int i = 0; i < rows; i++) {
+            long timestamp = newest - i * ROW_SPACING_MILLIS;
+            insertLog.setLong(1, timestamp);
+            insertLog.addBatch();
+            rollups.add(timestamp);
+        }
+        insertLog.executeBatch();
+        rollups.applyTo(this);
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    /**
+     * Mirrors DatabaseHelper.insertLog: one transaction with the row and every rollup it
+     * belongs to (day, week, month, year and hour of week).
+     */
+    void insertLog(long timestamp) throws SQLException {
+        connection.setAutoCommit(false);
+        insertLog.setLong(1, timestamp);
+        insertLog.executeUpdate();
+        Rollups rollups = new Rollups();
+        rollups.add(timestamp);
+        rollups.applyTo(this);
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    /**
+     * Mirrors DatabaseHelper.getLogsBetween: materializes matching rows.
+     */
+    List<long[]> getLogsBetween(long start, long end) throws SQLException {
+        List<long[]> logs = new ArrayList<>();
+        selectBetween.setLong(1, start);
+        selectBetween.setLong(2, end);
+        try (ResultSet resultSet = selectBetween.executeQuery()) {
+            while (resultSet.next()) {
+                logs.add(new long[]{resultSet.getInt(1), resultSet.getLong(2)});
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * Mirrors DatabaseHelper.countCigarettesOn: a daily_counts primary-key lookup.
+     */
+    int countCigarettesOn(long timestamp) throws SQLException {
+        selectDay.setLong(1, LocalDays.epochDay(timestamp));
+        try (ResultSet resultSet = selectDay.executeQuery()) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Sums the daily rollup over an inclusive range of days.
+     */
+    long sumDailyCounts(long fromDay, long toDay) throws SQLException {
+        sumDays.setLong(1, fromDay);
+        sumDays.setLong(2, toDay);
+        try (ResultSet resultSet = sumDays.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Mirrors how DatabaseHelper.getDailyCountIndex reads the daily rollup.
+     */
+    void forEachDailyCount(DailyCountVisitor visitor) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT " + LogSchema.COLUMN_DAY + ", "
+                     + LogSchema.COLUMN_COUNT + " FROM " + LogSchema.TABLE_DAILY_COUNTS)) {
+            while (resultSet.next()) {
+                visitor.visit(resultSet.getLong(1), resultSet.getInt(2));
+            }
+        }
+    }
+
+    private void addToDailyCount(long day, int delta) throws SQLException {
+        ensureDay.setLong(1, day);
+        ensureDay.executeUpdate();
+        bumpDay.setInt(1, delta);
+        bumpDay.setLong(2, day);
+        bumpDay.executeUpdate();
+    }
+
+    private void addToPeriodCount(int type, long period, int delta) throws SQLException {
+        ensurePeriod.setInt(1, type);
+        ensurePeriod.setLong(2, period);
+        ensurePeriod.executeUpdate();
+        bumpPeriod.setInt(1, delta);
+        bumpPeriod.setInt(2, type);
+        bumpPeriod.setLong(3, period);
+        bumpPeriod.executeUpdate();
+    }
+
+    private void addToSlotCount(int slot, int delta) throws SQLException {
+        ensureSlot.setInt(1, slot);
+        ensureSlot.executeUpdate();
+        bumpSlot.setInt(1, delta);
+        bumpSlot.setInt(2, slot);
+        bumpSlot.executeUpdate();
+    }
+
+    /**
+     * Mirrors DatabaseHelper.RollupDeltas: accumulates per-bucket deltas, then writes one
+     * upsert per touched bucket.
+     */
+    private static final class Rollups {
+
+        private final Map<Long, Integer> days = new HashMap<>();
+        private final List<Map<Long, Integer>> periods = new ArrayList<>();
+        private final int[] hours = new int[LocalDays.HOURS_PER_WEEK];
+
+        Rollups() {
+            for (int type = PERIOD_WEEK; type <= PERIOD_YEAR; type++) {
+                periods.add(new HashMap<>());
+            }
+        }
+
+        void add(long timestamp) {
+            long day = LocalDays.epochDay(timestamp);
+            long month = LocalDays.epochMonth(day);
+            increment(days, day);
+            increment(periods.get(PERIOD_WEEK), LocalDays.epochWeek(day));
+            increment(periods.get(PERIOD_MONTH), month);
+            increment(periods.get(PERIOD_YEAR), Math.floorDiv(month, 12L));
+            hours[LocalDays.hourOfWeek(timestamp)]++;
+        }
+
+        void applyTo(LogStore store) throws SQLException {
+            for (Map.Entry<Long, Integer> entry : days.entrySet()) {
+                store.addToDailyCount(entry.getKey(), entry.getValue());
+            }
+            for (int type = PERIOD_WEEK; type <= PERIOD_YEAR; type++) {
+                for (Map.Entry<Long, Integer> entry : periods.get(type).entrySet()) {
+                    store.addToPeriodCount(type, entry.getKey(), entry.getValue());
+                }
+            }
+            for (int slot = 0; slot < hours.length; slot++) {
+                if (hours[slot] != 0) {
+                    store.addToSlotCount(slot, hours[slot]);
+                }
+            }
+        }
+
+        private static void increment(Map<Long, Integer> counts, long key) {
+            Integer count = counts.get(key);
+            counts.put(key, count == null ? 1 : count + 1);
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        connection.close();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+        file.delete();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.stopsmoke.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the storage hot paths at different history sizes.
+ * The range query always covers the most recent four weeks, so a flat latency across
+ * sizes shows the timestamp index is being used.
+ */
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LogStoreBenchmark {
+
+    private static final long FOUR_WEEKS_MILLIS = 28L * 24 * 60 * 60 * 1000;
+
+    /**
+     * A store populated once per trial; the read benchmarks never change it.
+     */
+    @State(Scope.Benchmark)
+    public static class ReadState {
+
+        @Param({"1000", "100000", "1000000"})
+        public int rows;
+
+        LogStore store;
+        long newest;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            newest = System.currentTimeMillis();
+            store = new LogStore();
+            store.populate(rows, newest);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            store.close();
+        }
+    }
+
+    /**
+     * A fresh store per iteration: insertLog adds rows, so a store kept for the whole trial
+     * would grow well past the configured size and its throughput would drift.
+     */
+    @State(Scope.Benchmark)
+    public static class WriteState {
+
+        @Param({"1000", "100000", "1000000"})
+        public int rows;
+
+        LogStore store;
+        long nextInsert;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws Exception {
+            nextInsert = System.currentTimeMillis();
+            store = new LogStore();
+            store.populate(rows, nextInsert);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws Exception {
+            store.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void insertLog(WriteState state) throws Exception {
+        state.store.insertLog(++state.nextInsert);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public List<long[]> getLogsBetweenLastFourWeeks(ReadState state) throws Exception {
+        return state.store.getLogsBetween(state.newest - FOUR_WEEKS_MILLIS, state.newest);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public int countCigarettesOnToday(ReadState state) throws Exception {
+        return state.store.countCigarettesOn(state.newest);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.stopsmoke.benchmark;
+
+import com.example.stopsmoke.DailyCountIndex;
+import com.example.stopsmoke.LocalDays;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares answering "how many between these two dates" through SQLite with the
+ * in-memory DailyCountIndex. Ranges are random whole-day spans over the full history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RangeQueryBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private LogStore store;
+    private DailyCountIndex index;
+    private long[] fromDays;
+    private long[] toDays;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        long newest = System.currentTimeMillis();
+        store = new LogStore();
+        store.populate(rows, newest);
+        index = new DailyCountIndex();
+        store.forEachDailyCount(index::add);
+
+        // Pre-generate the ranges so the benchmarks measure only the lookup
+        long lastDay = LocalDays.epochDay(newest);
+        long firstDay = LocalDays.epochDay(newest - (rows - 1) * LogStore.ROW_SPACING_MILLIS);
+        Random random = new Random(42);
+        fromDays = new long[QUERIES];
+        toDays = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long a = firstDay + (long) (random.nextDouble() * (lastDay - firstDay + 1));
+            long b = firstDay + (long) (random.nextDouble() * (lastDay - firstDay + 1));
+            fromDays[i] = Math.min(a, b);
+            toDays[i] = Math.max(a, b);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    @Benchmark
+    public int getLogsBetweenSize() throws Exception {
+        int i = next++ & (QUERIES - 1);
+        return store.getLogsBetween(LocalDays.startOfDay(fromDays[i]), LocalDays.startOfDay(toDays[i] + 1) - 1).size();
+    }
+
+    @Benchmark
+    public long sumDailyCountsSql() throws Exception {
+        int i = next++ & (QUERIES - 1);
+        return store.sumDailyCounts(fromDays[i], toDays[i]);
+    }
+
+    @Benchmark
+    public long dailyCountIndexSum() {
+        int i = next++ & (QUERIES - 1);
+        return index.sum(fromDays[i], toDays[i]);
+    }
+}